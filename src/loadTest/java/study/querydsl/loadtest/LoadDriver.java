@@ -0,0 +1,133 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import study.querydsl.loadtest.LoadTestOptions.Operation;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 로컬 클라이언트 스레드로 api 를 호출하고 작업별 지연시간을 HdrHistogram 에 기록한다. (단위 us)
+ * warmup 동안의 호출은 기록하지 않는다.
+ */
+public class LoadDriver {
+
+    private static final long MAX_LATENCY_US = Duration.ofMinutes(1).toNanos() / 1000;
+
+    private final String baseUrl;
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final int totalWeight;
+
+    public LoadDriver(int port, LoadTestOptions options) {
+        this.baseUrl = "http://localhost:" + port;
+        this.options = options;
+        this.client = HttpClient.newHttpClient();
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(MAX_LATENCY_US, 3));
+            errors.put(operation, new AtomicLong());
+        }
+        this.totalWeight = options.getMix().values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public LoadTestReport run() throws InterruptedException {
+        long warmupEnd = System.nanoTime() + options.getWarmup().toNanos();
+        long end = warmupEnd + options.getDuration().toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.getThreads());
+        CountDownLatch done = new CountDownLatch(options.getThreads());
+        for (int i = 0; i < options.getThreads(); i++) {
+            workers.submit(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        Operation operation = pick();
+                        long start = System.nanoTime();
+                        boolean ok = call(operation);
+                        long elapsedUs = (System.nanoTime() - start) / 1000;
+                        if (start < warmupEnd) {
+                            continue;
+                        }
+                        if (ok) {
+                            histograms.get(operation).recordValue(Math.min(elapsedUs, MAX_LATENCY_US));
+                        } else {
+                            errors.get(operation).incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+        return new LoadTestReport(options, histograms, errors);
+    }
+
+    private Operation pick() {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : options.getMix().entrySet()) {
+            r -= entry.getValue();
+            if (r < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("empty mix");
+    }
+
+    private boolean call(Operation operation) {
+        try {
+            HttpResponse<Void> response = client.send(request(operation), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private HttpRequest request(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String teamName = "team" + skewedTeam(random);
+        int ageGoe = random.nextInt(80);
+        switch (operation) {
+            case search:
+                return get("/v1/members?teamName=" + teamName + "&ageGoe=" + ageGoe + "&ageLoe=" + (ageGoe + 10));
+            case stream:
+                return get("/v4/members?teamName=" + teamName + "&ageGoe=" + ageGoe + "&ageLoe=" + (ageGoe + 10));
+            case page:
+                return get("/v2/members?teamName=" + teamName + "&page=" + random.nextInt(20) + "&size=20");
+            case testPage:
+                return get("/v3/members?ageGoe=" + ageGoe + "&page=" + random.nextInt(20) + "&size=20&sort=age");
+            case write:
+                long memberId = 1 + random.nextInt(options.getMembers());
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/v1/members/" + memberId + "/team/" + skewedTeam(random)))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    //데이터와 같은 분포로 팀을 고름
+    private long skewedTeam(ThreadLocalRandom random) {
+        return 1 + (long) Math.floor(options.getTeams() * Math.pow(random.nextDouble(), options.getSkew()));
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+}
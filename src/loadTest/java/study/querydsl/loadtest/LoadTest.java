@@ -0,0 +1,36 @@
+package study.querydsl.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.repository.support.UsernameFilter;
+
+/**
+ * 부하 테스트 진입점
+ *
+ * 메모리 h2 로 애플리케이션을 띄우고 합성 데이터를 넣은 다음, 검색/페이징/쓰기 api 를 설정한 비율과 동시성으로 호출한다.
+ * ./gradlew loadTest -PloadTestArgs="members=1000000 threads=16 duration=30"
+ */
+@Slf4j
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(QuerydslApplication.class)
+                        .run("--spring.profiles.active=loadtest");
+        try {
+            SyntheticDataset.generate(context.getBean(JdbcTemplate.class), options);
+            context.getBean(UsernameFilter.class).rebuild(); //jdbc 로 넣은 회원은 하이버네이트 이벤트가 없음
+            int port = context.getWebServer().getPort();
+            log.info("running {} threads for {}s (warmup {}s) mix={}", options.getThreads(),
+                    options.getDuration().getSeconds(), options.getWarmup().getSeconds(), options.getMix());
+            new LoadDriver(port, options).run().print(System.out);
+        } finally {
+            context.close();
+        }
+    }
+}
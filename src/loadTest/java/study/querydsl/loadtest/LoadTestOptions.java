@@ -0,0 +1,70 @@
+package study.querydsl.loadtest;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 부하 테스트 설정. key=value 인자로 받는다.
+ *
+ * teams=10000 members=5000000 skew=3 threads=32 warmup=10 duration=60 mix=search:50,page:30,testPage:10,write:10 out=build/loadtest
+ *
+ * 블로킹 검색과 스트리밍 검색 비교는 같은 조건으로 동시 요청 수를 올려서 따로 돌린다.
+ * threads=256 mix=search:100 out=build/loadtest/search
+ * threads=256 mix=stream:100 out=build/loadtest/stream
+ */
+@Getter
+public class LoadTestOptions {
+
+    private final int teams;
+    private final int members;
+    private final double skew; //클수록 앞쪽 팀에 회원이 몰림 (1 = 균등)
+    private final int threads;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Map<Operation, Integer> mix;
+    private final String out;
+
+    private LoadTestOptions(Map<String, String> args) {
+        this.teams = Integer.parseInt(args.getOrDefault("teams", "10000"));
+        this.members = Integer.parseInt(args.getOrDefault("members", "5000000"));
+        this.skew = Double.parseDouble(args.getOrDefault("skew", "3"));
+        this.threads = Integer.parseInt(args.getOrDefault("threads", "32"));
+        this.warmup = Duration.ofSeconds(Long.parseLong(args.getOrDefault("warmup", "10")));
+        this.duration = Duration.ofSeconds(Long.parseLong(args.getOrDefault("duration", "60")));
+        this.mix = parseMix(args.getOrDefault("mix", "search:50,page:30,testPage:10,write:10"));
+        this.out = args.getOrDefault("out", "build/loadtest");
+    }
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> map = new HashMap<>();
+        for (String arg : args) {
+            int idx = arg.indexOf('=');
+            if (idx < 0) {
+                throw new IllegalArgumentException("expected key=value but was " + arg);
+            }
+            map.put(arg.substring(0, idx), arg.substring(idx + 1));
+        }
+        return new LoadTestOptions(map);
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] kv = part.split(":");
+            mix.put(Operation.valueOf(kv[0]), Integer.parseInt(kv[1]));
+        }
+        return mix;
+    }
+
+    public enum Operation {
+        search,   //GET /v1/members      MemberJpaRepository.search
+        stream,   //GET /v4/members      MemberStreamRepository.search (search 와 같은 조건, ndjson)
+        page,     //GET /v2/members      MemberRepositoryImpl.searchPageSimple
+        testPage, //GET /v3/members      MemberTestRepository.applyPagination
+        write     //POST /v1/members/{id}/team/{teamId}
+    }
+}
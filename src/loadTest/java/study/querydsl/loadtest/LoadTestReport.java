@@ -0,0 +1,58 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.Histogram;
+import study.querydsl.loadtest.LoadTestOptions.Operation;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 작업별 처리량과 p50/p99/p999 를 출력하고, 전체 분포는 out 디렉토리에 .hgrm 파일로 남긴다.
+ * (.hgrm 은 HdrHistogram plotter 로 그래프를 볼 수 있음)
+ */
+public class LoadTestReport {
+
+    private final LoadTestOptions options;
+    private final Map<Operation, Histogram> histograms;
+    private final Map<Operation, AtomicLong> errors;
+
+    public LoadTestReport(LoadTestOptions options, Map<Operation, Histogram> histograms,
+                          Map<Operation, AtomicLong> errors) {
+        this.options = options;
+        this.histograms = histograms;
+        this.errors = errors;
+    }
+
+    public void print(PrintStream out) throws Exception {
+        double seconds = options.getDuration().toMillis() / 1000.0;
+        Path dir = Path.of(options.getOut());
+        Files.createDirectories(dir);
+
+        out.printf("%-9s %10s %10s %10s %10s %10s %10s %8s%n",
+                "op", "count", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "errors");
+        for (Operation operation : options.getMix().keySet()) {
+            Histogram histogram = histograms.get(operation);
+            out.printf("%-9s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    operation,
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    errors.get(operation).get());
+            writeHgrm(histogram, dir.resolve(operation + ".hgrm"));
+        }
+        out.println("histograms written to " + dir.toAbsolutePath());
+    }
+
+    private void writeHgrm(Histogram histogram, Path file) throws FileNotFoundException {
+        try (PrintStream stream = new PrintStream(file.toFile())) {
+            histogram.outputPercentileDistribution(stream, 1000.0); //us -> ms
+        }
+    }
+}
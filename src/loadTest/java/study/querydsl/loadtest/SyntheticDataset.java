@@ -0,0 +1,38 @@
+package study.querydsl.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * h2 에서 sql 로 바로 합성 데이터를 만든다. (엔티티를 거치지 않아서 수백만 건도 빠름)
+ * 팀 배정은 rand()^skew 로 앞쪽 팀에 몰리게 하고, 약 5% 는 팀이 없다.
+ */
+@Slf4j
+public class SyntheticDataset {
+
+    private static final int CHUNK = 500_000;
+
+    public static void generate(JdbcTemplate jdbcTemplate, LoadTestOptions options) {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.update("insert into team (id, name, member_count) " +
+                "select x, 'team' || x, 0 from system_range(1, ?)", options.getTeams());
+
+        for (int from = 1; from <= options.getMembers(); from += CHUNK) {
+            int to = Math.min(from + CHUNK - 1, options.getMembers());
+            jdbcTemplate.update("insert into member (member_id, username, age, team_id) " +
+                            "select x, 'member' || x, mod(x * 7919, 100), " +
+                            "case when rand() < 0.05 then null " +
+                            "else 1 + cast(floor(? * power(rand(), ?)) as bigint) end " +
+                            "from system_range(?, ?)",
+                    options.getTeams(), options.getSkew(), from, to);
+        }
+
+        jdbcTemplate.update("update team t set member_count = " +
+                "(select count(*) from member m where m.team_id = t.id)");
+        //직접 넣은 id 다음부터 sequence 가 이어지도록
+        jdbcTemplate.execute("alter sequence member_seq restart with " + (options.getMembers() + 1));
+        jdbcTemplate.execute("alter sequence team_seq restart with " + (options.getTeams() + 1));
+        log.info("generated {} teams, {} members in {} ms",
+                options.getTeams(), options.getMembers(), System.currentTimeMillis() - start);
+    }
+}
@@ -3,6 +3,7 @@ package study.querydsl;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.Bean;
 
 import javax.persistence.EntityManager;
@@ -11,7 +12,9 @@ import javax.persistence.EntityManager;
 public class QuerydslApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(QuerydslApplication.class, args);
+		SpringApplication application = new SpringApplication(QuerydslApplication.class);
+		application.setApplicationStartup(new BufferingApplicationStartup(10000)); //기동 단계별 시간 기록 (StartupReport, /actuator/startup)
+		application.run(args);
 	}
 
 	@Bean //빈으로 만들었을 때
@@ -0,0 +1,55 @@
+package study.querydsl.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * 기동이 끝나면 오래 걸린 단계(빈 생성, 컨텍스트 refresh 단계 등)를 시간 순으로 로그에 남긴다.
+ * 빈 생성 시간은 그 빈이 의존하는 빈을 만드는 시간까지 포함한다.
+ * 전체 타임라인은 /actuator/startup 으로 볼 수 있다.
+ */
+@Slf4j
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final int top;
+
+    public StartupReport(@Value("${study.querydsl.startup.report-top:20}") int top) {
+        this.top = top;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ApplicationStartup startup = event.getApplicationContext().getApplicationStartup();
+        if (!(startup instanceof BufferingApplicationStartup)) {
+            return;
+        }
+        StartupTimeline timeline = ((BufferingApplicationStartup) startup).getBufferedTimeline();
+        String report = timeline.getEvents().stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(top)
+                .map(e -> String.format("%6d ms  %s%s", e.getDuration().toMillis(),
+                        e.getStartupStep().getName(), tags(e.getStartupStep())))
+                .collect(Collectors.joining("\n"));
+        log.info("startup {} ms (jvm uptime), slowest steps:\n{}",
+                ManagementFactory.getRuntimeMXBean().getUptime(), report);
+    }
+
+    private String tags(StartupStep step) {
+        return StreamSupport.stream(step.getTags().spliterator(), false)
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(", ", " [", "]"));
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import study.querydsl.entity.support.BlockSequenceGenerator;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * local 초기 데이터 스냅샷
+ *
+ * 처음 한번 seed 한 db 를 H2 SCRIPT 로 파일에 떠두고, 다음 기동부터는 RUNSCRIPT 로 한번에 복원한다.
+ * 파일명에 데이터 크기와 스키마 해시를 넣어서 스키마가 바뀌면 옛날 스냅샷은 쓰지 않는다.
+ * 스키마 해시는 ddl-auto 가 만든 ddl (columnDefinition, 인덱스, sequence 증가값 포함) 과 id block_size 로 만든다.
+ * SCRIPT/RUNSCRIPT 는 h2 서버 쪽 파일을 읽고 쓰므로 tcp 서버가 같은 머신에 떠 있어야 한다.
+ */
+@Slf4j
+@Profile("local")
+@Component
+public class InitDataSnapshot {
+
+    private static final Pattern SEQUENCE_START = Pattern.compile("\\s(START|RESTART) WITH \\d+"); //seed 하면 바뀌는 현재값
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory emf;
+    private final boolean enabled;
+    private final File dir;
+    private volatile String schemaHash;
+
+    public InitDataSnapshot(JdbcTemplate jdbcTemplate, EntityManagerFactory emf,
+                            @Value("${study.querydsl.init.snapshot.enabled:true}") boolean enabled,
+                            @Value("${study.querydsl.init.snapshot.dir:${user.home}/.querydsl-snapshot}") File dir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.emf = emf;
+        this.enabled = enabled;
+        this.dir = dir;
+    }
+
+    public boolean restore(String dataset) {
+        if (!enabled) {
+            return false;
+        }
+        File file = file(dataset);
+        if (!file.exists()) {
+            return false;
+        }
+        //ddl-auto 로 만든 스키마는 버리고 스냅샷의 스키마, 데이터, sequence 를 그대로 올림
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("RUNSCRIPT FROM '" + path(file) + "' COMPRESSION DEFLATE");
+        log.info("init data restored from snapshot {}", file);
+        return true;
+    }
+
+    public void dump(String dataset) {
+        if (!enabled) {
+            return;
+        }
+        File file = file(dataset);
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.warn("cannot create snapshot dir {}", dir);
+            return;
+        }
+        jdbcTemplate.execute("SCRIPT TO '" + path(file) + "' COMPRESSION DEFLATE");
+        log.info("init data snapshot written to {}", file);
+    }
+
+    private File file(String dataset) {
+        return new File(dir, "init-" + dataset + "-" + schemaHash() + ".zip");
+    }
+
+    //restore 에서 처음 부를 때 (ddl-auto 가 막 만든 스키마) 계산해서 seed 한 뒤의 dump 도 같은 값을 씀
+    private String schemaHash() {
+        String hash = schemaHash;
+        if (hash == null) {
+            //background bootstrap 이면 ddl-auto 가 끝날 때까지 기다린 뒤 스키마를 읽음 (emf 호출이 기다림)
+            Object blockSize = emf.getProperties()
+                    .getOrDefault(BlockSequenceGenerator.BLOCK_SIZE, BlockSequenceGenerator.DEFAULT_BLOCK_SIZE);
+            String schema = jdbcTemplate.queryForList("SCRIPT NODATA", String.class).stream()
+                    .filter(statement -> !statement.startsWith("--") && !statement.startsWith("CREATE USER"))
+                    .map(statement -> SEQUENCE_START.matcher(statement).replaceAll(""))
+                    .collect(Collectors.joining("\n"));
+            hash = DigestUtils.md5DigestAsHex((schema + "\nblock_size=" + blockSize).getBytes(StandardCharsets.UTF_8))
+                    .substring(0, 8);
+            schemaHash = hash;
+        }
+        return hash;
+    }
+
+    private String path(File file) {
+        return file.getAbsolutePath().replace("'", "''");
+    }
+}
@@ -0,0 +1,100 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberStreamRepository;
+import study.querydsl.repository.MemberTestRepository;
+import study.querydsl.repository.support.DataVersion;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequiredArgsConstructor
+public class MemberController {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final MemberTestRepository memberTestRepository;
+    private final MemberStreamRepository memberStreamRepository;
+    private final SearchQueryExecutor searchQueryExecutor;
+    private final DataVersion dataVersion;
+
+    //If-None-Match 가 현재 데이터 버전과 같으면 쿼리 없이 304 Not Modified
+    @GetMapping("/v1/members")
+    public DeferredResult<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition,
+                                                              HttpServletRequest request, WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersion.etag())) {
+            return null;
+        }
+        return searchQueryExecutor.execute(request, searchKey("v1", condition, null),
+                () -> memberJpaRepository.search(condition));
+    }
+
+    @GetMapping("/v2/members")
+    public DeferredResult<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                                              HttpServletRequest request, WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersion.etag())) {
+            return null;
+        }
+        return searchQueryExecutor.execute(request, searchKey("v2", condition, pageable),
+                () -> memberRepository.searchPageSimple(condition, pageable));
+    }
+
+    @GetMapping("/v3/members")
+    public DeferredResult<Page<MemberDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                          HttpServletRequest request, WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersion.etag())) {
+            return null;
+        }
+        return searchQueryExecutor.execute(request, searchKey("v3", condition, pageable),
+                () -> memberTestRepository.applyPagination(condition, pageable)
+                .map(m -> new MemberDto(m.getUsername(), m.getAge())));
+    }
+
+    //v1 과 같은 검색을 한 줄에 하나씩 (ndjson) 보냄. 클라이언트가 읽는 만큼만 db 에서 읽음
+    @GetMapping(value = "/v4/members", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MemberTeamDto> searchMemberV4(MemberSearchCondition condition) {
+        return memberStreamRepository.search(condition)
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e));
+    }
+
+    //같은 검색이 동시에 들어오면 한번만 실행 (SearchQueryExecutor). 데이터 버전이 들어가서 쓰기 이후엔 다른 key
+    private List<Object> searchKey(String api, MemberSearchCondition condition, Pageable pageable) {
+        String username = condition.isUsernameIgnoreCase()
+                ? Member.normalizeUsername(condition.getUsername())
+                : condition.getUsername();
+        return Arrays.asList(api, dataVersion.current(), username, condition.isUsernameIgnoreCase(),
+                condition.getTeamName(), condition.getAgeGoe(), condition.getAgeLoe(), pageable);
+    }
+
+    @PostMapping("/v1/members/{memberId}/team/{teamId}")
+    public void changeTeam(@PathVariable Long memberId, @PathVariable Long teamId) {
+        try {
+            memberJpaRepository.changeTeam(memberId, teamId);
+        } catch (ObjectRetrievalFailureException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+    }
+}
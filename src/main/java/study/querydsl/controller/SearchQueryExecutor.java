@@ -0,0 +1,177 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import study.querydsl.monitoring.RequestTelemetry;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 검색 api 를 요청의 남은 시간 안에서만 실행한다.
+ *
+ * 요청 헤더(X-Request-Timeout, ms) 나 기본 예산으로 마감 시각을 정해서 jdbc query timeout 으로 내려보내고,
+ * 클라이언트 연결이 끊기거나 응답 시간이 지나면 실행 중인 statement 를 cancel 한다.
+ * key 를 주면 같은 key 로 실행 중인 검색에 합류해서 그 결과를 같이 받는다. ({@link SingleFlight})
+ */
+@Component
+public class SearchQueryExecutor {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final ExecutorService executor;
+    private final Duration maxBudget;
+    private final Counter timeoutCounter;
+    private final Counter cancelledCounter;
+    private final SingleFlight singleFlight;
+
+    public SearchQueryExecutor(EntityManager em,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${study.querydsl.search.timeout:3s}") Duration maxBudget,
+                               @Value("${study.querydsl.search.threads:16}") int threads,
+                               @Value("${study.querydsl.search.coalesce.enabled:true}") boolean coalesce,
+                               @Value("${study.querydsl.search.coalesce.reuse:0ms}") Duration reuse) {
+        this.em = em;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.maxBudget = maxBudget;
+        this.timeoutCounter = meterRegistry.counter("member.search.queries", "result", "timeout");
+        this.cancelledCounter = meterRegistry.counter("member.search.queries", "result", "cancelled");
+        this.singleFlight = coalesce ? new SingleFlight(reuse, meterRegistry) : null;
+    }
+
+    public <T> DeferredResult<T> execute(HttpServletRequest request, Supplier<T> search) {
+        return execute(request, null, search);
+    }
+
+    //key 는 검색 조건 + 페이지 + 데이터 버전처럼 결과가 같으면 같은 값이어야 함
+    public <T> DeferredResult<T> execute(HttpServletRequest request, Object key, Supplier<T> search) {
+        Duration budget = budget(request);
+        QueryDeadline deadline = QueryDeadline.after(budget);
+        CancellableQuery query = new CancellableQuery();
+        RequestTelemetry telemetry = RequestTelemetry.current();
+
+        DeferredResult<T> result = new DeferredResult<>(budget.toMillis());
+        result.onTimeout(() -> query.cancel(false));
+        result.onError(e -> query.cancel(true)); //클라이언트가 연결을 끊은 경우
+
+        Supplier<CompletableFuture<T>> run = () -> submit(search, deadline, query, telemetry);
+        if (key == null || singleFlight == null) {
+            run.get().whenComplete((value, e) -> complete(result, query, value, e));
+            return result;
+        }
+        singleFlight.run(key, run).whenComplete((value, e) -> {
+            //합류한 실행이 그쪽 요청의 마감이나 취소로 끝났으면 내 예산 안에서 직접 실행
+            if (e != null && isTimeout(unwrap(e)) && !query.isCancelled() && !deadline.isExpired()) {
+                run.get().whenComplete((retried, retryError) -> complete(result, query, retried, retryError));
+            } else {
+                complete(result, query, value, e);
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> search, QueryDeadline deadline, CancellableQuery query,
+                                            RequestTelemetry telemetry) {
+        return CompletableFuture.supplyAsync(() -> RequestTelemetry.run(telemetry, () -> readOnlyTx.execute(status -> {
+            //시작 전에 취소됐으면 실패로 끝냄. null 로 끝내면 합류한 요청들이 빈 결과를 받고 reuse 로 재사용까지 됨
+            if (!query.bind(em.unwrap(Session.class))) {
+                throw new QueryTimeoutException("search cancelled before start");
+            }
+            try {
+                return QueryDeadline.run(deadline, search);
+            } finally {
+                query.unbind();
+            }
+        })), executor);
+    }
+
+    private <T> void complete(DeferredResult<T> result, CancellableQuery query, T value, Throwable e) {
+        if (e == null) {
+            result.setResult(value);
+            return;
+        }
+        Throwable cause = unwrap(e);
+        if (isTimeout(cause)) {
+            (query.isClientGone() ? cancelledCounter : timeoutCounter).increment();
+        }
+        result.setErrorResult(cause);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        return e instanceof QueryTimeoutException || e instanceof javax.persistence.QueryTimeoutException;
+    }
+
+    private Duration budget(HttpServletRequest request) {
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header == null) {
+            return maxBudget;
+        }
+        try {
+            Duration requested = Duration.ofMillis(Long.parseLong(header));
+            return requested.compareTo(maxBudget) < 0 ? requested : maxBudget;
+        } catch (NumberFormatException e) {
+            return maxBudget;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //다른 스레드에서 Session.cancelQuery() 로 실행 중인 statement 를 취소
+    static class CancellableQuery {
+        private Session session;
+        private boolean cancelled;
+        private boolean clientGone;
+
+        synchronized boolean bind(Session session) {
+            this.session = session;
+            return !cancelled;
+        }
+
+        synchronized void unbind() {
+            this.session = null;
+        }
+
+        synchronized void cancel(boolean clientGone) {
+            this.cancelled = true;
+            this.clientGone = clientGone;
+            if (session != null) {
+                session.cancelQuery();
+            }
+        }
+
+        synchronized boolean isClientGone() {
+            return clientGone;
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 같은 key 의 동시 호출을 실행 하나로 합친다. (single flight)
+ *
+ * 실행 중에 같은 key 로 들어온 호출은 새로 실행하지 않고 그 결과를 같이 받는다.
+ * reuse 가 0 보다 크면 끝난 결과도 그 시간 동안 재사용한다. 실패한 결과는 바로 버린다.
+ * 결과 객체를 여러 호출이 같이 보므로 받은 쪽에서 수정하면 안 된다.
+ */
+class SingleFlight {
+
+    private final Map<Object, CompletableFuture<?>> flights = new ConcurrentHashMap<>();
+    private final Duration reuse;
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter reused;
+
+    SingleFlight(Duration reuse, MeterRegistry meterRegistry) {
+        this.reuse = reuse;
+        this.leaders = meterRegistry.counter("member.search.coalesce", "role", "leader");
+        this.followers = meterRegistry.counter("member.search.coalesce", "role", "follower");
+        this.reused = meterRegistry.counter("member.search.coalesce", "role", "reused");
+        //전체 호출 중 실행 없이 결과를 받은 비율
+        Gauge.builder("member.search.coalesce.ratio", this, SingleFlight::ratio).register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> CompletableFuture<V> run(Object key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<?> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            (existing.isDone() ? reused : followers).increment();
+            return ((CompletableFuture<V>) existing).copy();
+        }
+        leaders.increment();
+        try {
+            call.get().whenComplete((value, e) -> {
+                if (e != null || reuse.isZero()) {
+                    flights.remove(key, flight);
+                } else {
+                    CompletableFuture.delayedExecutor(reuse.toMillis(), TimeUnit.MILLISECONDS)
+                            .execute(() -> flights.remove(key, flight));
+                }
+                if (e != null) {
+                    flight.completeExceptionally(e);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight.copy();
+    }
+
+    private double ratio() {
+        double shared = followers.count() + reused.count();
+        double total = shared + leaders.count();
+        return total == 0 ? 0 : shared / total;
+    }
+}
@@ -1,46 +1,107 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.TeamJpaRepository;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
 
+@Slf4j
 @Profile("local") //local일때만 동작
 @Component //bean에 자동등록
 @RequiredArgsConstructor
 public class initMember {
 
     private final InitMemberService initMemberSErvice;
+    private final InitDataSnapshot initDataSnapshot;
 
 
-    @PostConstruct
+    //기동을 막지 않게 준비가 끝난 뒤 실행. fast-start 프로파일(background bootstrap)이면 여기서 EntityManagerFactory 를 기다림
+    //스냅샷 복원은 엔티티 이벤트가 없어서 데이터를 읽는 다른 ready 리스너(UsernameFilter 등)보다 먼저
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
     public void init(){
-        initMemberSErvice.init();
+        long start = System.currentTimeMillis();
+        String dataset = initMemberSErvice.dataset();
+        String source = "snapshot";
+        if (!initDataSnapshot.restore(dataset)) { //스냅샷이 없을 때만 seed 하고 떠둠
+            initMemberSErvice.init();
+            initDataSnapshot.dump(dataset);
+            source = "seed";
+        }
+        log.info("init member data {} from {}: {} ms", dataset, source, System.currentTimeMillis() - start);
     }
 
     @Component
     static class InitMemberService{
+        private static final int CHUNK_SIZE = 1000;
+
         @PersistenceContext
         private EntityManager em;
+        @Autowired
+        private TeamJpaRepository teamJpaRepository;
+        @Autowired
+        private MemberJpaRepository memberJpaRepository;
+        @Value("${study.querydsl.init.teams:2}")
+        private int teamCount;
+        @Value("${study.querydsl.init.members:100}")
+        private int memberCount;
+
+        public String dataset() {
+            return "t" + teamCount + "-m" + memberCount;
+        }
+
+        @PostConstruct
+        void checkCounts() {
+            //팀이 없으면 회원을 나눠 넣을 곳이 없음 (i % teamCount)
+            if (teamCount < 1) {
+                throw new IllegalArgumentException("study.querydsl.init.teams must be at least 1: " + teamCount);
+            }
+            if (memberCount < 0) {
+                throw new IllegalArgumentException("study.querydsl.init.members must not be negative: " + memberCount);
+            }
+        }
 
         @Transactional
         public void init(){
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-
-            em.persist(teamA);
-            em.persist(teamB);
+            long[] teamIds = new long[teamCount];
+            for (int i = 0; i < teamCount; i++) {
+                Team team = new Team("team" + (i < 26 ? String.valueOf((char) ('A' + i)) : String.valueOf(i)));
+                em.persist(team);
+                teamIds[i] = team.getId();
+            }
+            em.flush();
+            em.clear();
 
-            for (int i=0; i<100; i++){
-                Team selectedTeam = i%2 == 0?teamA:teamB;
-                em.persist(new Member("member"+i,i,selectedTeam));
+            //회원은 팀 프록시(getReference)에 붙임. 로딩된 팀이면 Team.members 에 회원이 계속 쌓여서
+            //saveAll 이 clear 해도 회원 전체가 메모리에 남음. 프록시는 clear 뒤 다시 받음
+            //saveAll 로 batch insert 하고 팀 카운터도 같이 올림
+            List<Member> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (int i=0; i<memberCount; i++){
+                Team selectedTeam = em.getReference(Team.class, teamIds[i % teamCount]);
+                chunk.add(new Member("member"+i,i%100,selectedTeam));
+                if (chunk.size() == CHUNK_SIZE) {
+                    memberJpaRepository.saveAll(chunk);
+                    chunk.clear();
+                }
             }
+            memberJpaRepository.saveAll(chunk);
         }
     }
 }
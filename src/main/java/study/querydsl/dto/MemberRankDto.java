@@ -0,0 +1,32 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//팀 안에서 나이 순위와 팀 통계 (window function 한번으로 계산)
+@Data
+@NoArgsConstructor
+public class MemberRankDto {
+    private Long memberId;
+    private String username;
+    private int age;
+    private Long teamId;
+    private String teamName;
+    private long ageRank;
+    private int teamMaxAge;
+    private long teamSize;
+
+    @QueryProjection
+    public MemberRankDto(Long memberId, String username, int age, Long teamId, String teamName,
+                         long ageRank, int teamMaxAge, long teamSize) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.ageRank = ageRank;
+        this.teamMaxAge = teamMaxAge;
+        this.teamSize = teamSize;
+    }
+}
@@ -6,6 +6,7 @@ public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageGoe, ageLoe)
 
     private String username;
+    private boolean usernameIgnoreCase; //username 대소문자 무시
     private String teamName;
     private Integer ageGoe; //크거나 같거나
     private Integer ageLoe; //작거나 같거나
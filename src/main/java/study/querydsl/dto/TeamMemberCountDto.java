@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class TeamMemberCountDto {
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+
+    @QueryProjection
+    public TeamMemberCountDto(Long teamId, String teamName, long memberCount) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//팀 + 소속 회원 목록 (join 한번으로 만듦, TeamJpaRepository.findTeamsWithMembers)
+@Data
+@NoArgsConstructor
+public class TeamWithMembersDto {
+    private Long teamId;
+    private String teamName;
+    private List<MemberDto> members = new ArrayList<>();
+
+    @QueryProjection
+    public TeamWithMembersDto(Long teamId, String teamName, List<MemberDto> members) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.members = members;
+    }
+}
@@ -0,0 +1,105 @@
+package study.querydsl.dto.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UserDto;
+
+import java.io.IOException;
+
+/**
+ * 조회 dto 전용 json 직렬화
+ *
+ * 기본 BeanSerializer 는 필드마다 리플렉션으로 getter 를 호출한다.
+ * 여기서는 getter 를 직접 부르고 미리 인코딩해둔 필드명으로 JsonGenerator 에 바로 쓴다.
+ * (JsonGenerator 는 응답 OutputStream 에 직접 쓰므로 중간 트리도 만들지 않음)
+ */
+@JsonComponent
+public class DtoJsonComponent {
+
+    private static final SerializedString MEMBER_ID = new SerializedString("memberId");
+    private static final SerializedString USERNAME = new SerializedString("username");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString AGE = new SerializedString("age");
+    private static final SerializedString TEAM_ID = new SerializedString("teamId");
+    private static final SerializedString TEAM_NAME = new SerializedString("teamName");
+
+    //스프링 밖(벤치마크, 배치)에서 ObjectMapper 에 등록할 때 사용
+    public static SimpleModule module() {
+        SimpleModule module = new SimpleModule("DtoJsonComponent");
+        module.addSerializer(MemberTeamDto.class, new MemberTeamDtoSerializer());
+        module.addSerializer(MemberDto.class, new MemberDtoSerializer());
+        module.addSerializer(UserDto.class, new UserDtoSerializer());
+        return module;
+    }
+
+    public static class MemberTeamDtoSerializer extends StdSerializer<MemberTeamDto> {
+
+        public MemberTeamDtoSerializer() {
+            super(MemberTeamDto.class);
+        }
+
+        @Override
+        public void serialize(MemberTeamDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(dto);
+            gen.writeFieldName(MEMBER_ID);
+            writeNumber(gen, dto.getMemberId());
+            gen.writeFieldName(USERNAME);
+            gen.writeString(dto.getUsername());
+            gen.writeFieldName(AGE);
+            gen.writeNumber(dto.getAge());
+            gen.writeFieldName(TEAM_ID);
+            writeNumber(gen, dto.getTeamId());
+            gen.writeFieldName(TEAM_NAME);
+            gen.writeString(dto.getTeamName());
+            gen.writeEndObject();
+        }
+    }
+
+    public static class MemberDtoSerializer extends StdSerializer<MemberDto> {
+
+        public MemberDtoSerializer() {
+            super(MemberDto.class);
+        }
+
+        @Override
+        public void serialize(MemberDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(dto);
+            gen.writeFieldName(USERNAME);
+            gen.writeString(dto.getUsername());
+            gen.writeFieldName(AGE);
+            gen.writeNumber(dto.getAge());
+            gen.writeEndObject();
+        }
+    }
+
+    public static class UserDtoSerializer extends StdSerializer<UserDto> {
+
+        public UserDtoSerializer() {
+            super(UserDto.class);
+        }
+
+        @Override
+        public void serialize(UserDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(dto);
+            gen.writeFieldName(NAME);
+            gen.writeString(dto.getName());
+            gen.writeFieldName(AGE);
+            gen.writeNumber(dto.getAge());
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+}
@@ -1,19 +1,34 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
+import java.util.Locale;
 
 @Entity
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id","username","age"}) //연관관계필드들 들어가면 안됨
+@Table(indexes = @Index(name = "idx_member_username_lower", columnList = "username_lower"))
 public class Member {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq") //insert 마다 sequence 를 조회하지 않도록 블록 할당
+    @GenericGenerator(name = "member_seq", strategy = "study.querydsl.entity.support.BlockSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"))
     @Column(name = "member_id")
     private Long id;
     private String username;
+
+    //대소문자 무시 검색용. db 가 lower(username) 으로 계산하는 컬럼이라 bulk update, 직접 넣은 sql 에도 항상 맞음
+    @Column(name = "username_lower", columnDefinition = "varchar(255) as lower(username)",
+            insertable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private String usernameLower;
     private int age;
 
     @ManyToOne(fetch = FetchType.LAZY) //연관관계 주인
@@ -31,16 +46,30 @@ public class Member {
 
     public Member(String username, int age, Team team) {
         this.id = id;
-        this.username = username;
+        setUsername(username);
         this.age = age;
         if(team != null){
             changeTeam(team);
         }
     }
 
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameLower = normalizeUsername(username); //영속성 컨텍스트 안의 값도 db 와 같게
+    }
+
+    //h2 lower() 와 같은 규칙
+    public static String normalizeUsername(String username) {
+        return username == null ? null : username.toLowerCase(Locale.ENGLISH);
+    }
+
     public void changeTeam(Team team){
         this.team =team;
-        team.getMembers().add(this);
+        //로딩 안된 members 를 add 하다가 팀원 전체가 select 되는 것을 막음. 팀원 수는 Team.memberCount 로 관리
+        //로딩 안된 팀 프록시(getReference)는 getMembers() 만 불러도 팀을 select 하므로 먼저 확인
+        if (Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers())) {
+            team.getMembers().add(this);
+        }
     }
 
 
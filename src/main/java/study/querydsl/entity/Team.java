@@ -1,6 +1,11 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -12,14 +17,25 @@ import java.util.List;
 @ToString(of={"id","name"})
 public class Team {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq") //insert 마다 sequence 를 조회하지 않도록 블록 할당
+    @GenericGenerator(name = "team_seq", strategy = "study.querydsl.entity.support.BlockSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "team_seq"))
     private Long id;
     private String name;
 
 
     @OneToMany(mappedBy = "team") //거울함 : 외래키값 변경안
+    @LazyCollection(LazyCollectionOption.EXTRA) //size(), add() 해도 컬렉션 전체를 로딩하지 않음
     private List<Member> members = new ArrayList<>();
 
+    //소속 회원 수 캐시. 컬렉션 대신 이걸 읽는다. 값 변경은 TeamJpaRepository 의 sql increment 로만 함
+    //MemberJpaRepository 의 save, saveAll, changeTeam, delete 만 카운터를 같이 바꾼다
+    //MemberRepository(spring data) 의 save/delete, em.persist/remove 직접 호출, member bulk delete/update 는 카운터를 거치지 않으므로
+    //그 뒤에는 TeamJpaRepository.syncMemberCount 로 다시 맞춰야 함
+    @Column(updatable = false) //엔티티 update 시 메모리의 옛날 값으로 덮어쓰지 않도록
+    private long memberCount;
+
     public Team(String name){
         this.name=name;
     }
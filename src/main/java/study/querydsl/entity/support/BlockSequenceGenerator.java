@@ -0,0 +1,39 @@
+package study.querydsl.entity.support;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * 블록 단위로 id 를 할당하는 sequence 생성기 (pooled-lo)
+ *
+ * sequence 를 한번 호출해서 block_size 개의 id 를 메모리에서 나눠준다.
+ * sequence 자체가 block_size 씩 증가하므로 여러 애플리케이션 인스턴스가 동시에 insert 해도 블록이 겹치지 않는다.
+ * 블록 크기는 spring.jpa.properties.study.querydsl.id.block_size 로 설정한다.
+ * study.querydsl.id.initial_value 를 주면 sequence 를 그 값부터 만든다. (샤드마다 id 구간을 나눌 때, ShardConfig)
+ */
+public class BlockSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String BLOCK_SIZE = "study.querydsl.id.block_size";
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+    public static final String INITIAL_VALUE = "study.querydsl.id.initial_value";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+        int blockSize = configuration.getSetting(BLOCK_SIZE, StandardConverters.INTEGER, DEFAULT_BLOCK_SIZE);
+        params.setProperty(INCREMENT_PARAM, String.valueOf(blockSize));
+        String initialValue = configuration.getSetting(INITIAL_VALUE, StandardConverters.STRING);
+        if (initialValue != null) {
+            params.setProperty(INITIAL_PARAM, initialValue);
+        }
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
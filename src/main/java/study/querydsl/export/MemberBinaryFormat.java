@@ -0,0 +1,49 @@
+package study.querydsl.export;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 회원/팀 bulk export 바이너리 포맷 (v1)
+ *
+ * <pre>
+ * header : magic "QDMX"(4) | version(1)
+ * TEAM   : 0x01 | teamId(varint) | name length(varint) | name(utf-8)
+ * MEMBER : 0x02 | memberId(varint) | age(varint) | team ref(varint, 0=팀없음, n=n번째 TEAM) | username length(varint) | username(utf-8)
+ * END    : 0x00
+ * </pre>
+ * 팀 이름은 처음 나올 때 TEAM 레코드로 한번만 쓰고, 회원은 팀 번호만 가진다. (사전 인코딩)
+ */
+public final class MemberBinaryFormat {
+
+    public static final byte[] MAGIC = {'Q', 'D', 'M', 'X'};
+    public static final byte VERSION = 1;
+
+    public static final byte END = 0x00;
+    public static final byte TEAM = 0x01;
+    public static final byte MEMBER = 0x02;
+
+    public static final int MAX_VARINT_SIZE = 10;
+
+    private MemberBinaryFormat() {
+    }
+
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long getVarLong(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("malformed varint at " + buffer.position());
+    }
+}
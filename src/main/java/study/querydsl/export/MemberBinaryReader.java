@@ -0,0 +1,162 @@
+package study.querydsl.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static study.querydsl.export.MemberBinaryFormat.*;
+
+/**
+ * {@link MemberBinaryFormat} 파일을 매핑해서 레코드를 하나씩 읽는다.
+ *
+ * 엔티티나 레코드 객체를 만들지 않고 커서가 현재 레코드의 위치만 가리킨다.
+ * username 은 {@link #username()} 을 부를 때만 디코딩하고, 팀 이름은 사전에서 꺼내므로 새로 만들지 않는다.
+ * 파일을 구간(region)씩 매핑해서 writer 가 만든 2GB 넘는 파일도 읽는다. 레코드 하나는 한 구간 안에 오도록 다시 매핑한다.
+ * END 없이 끝난 파일(중간에 끊긴 export)은 예외를 던진다.
+ */
+public class MemberBinaryReader implements Closeable {
+
+    private static final long REGION_SIZE = 64L << 20;
+    private static final int MAX_HEADER = 1 + MAX_VARINT_SIZE * 4; //MEMBER 레코드의 이름 앞부분
+
+    private final Path path;
+    private final long regionSize;
+    private final FileChannel channel;
+    private final long size;
+    private final List<Long> teamIds = new ArrayList<>();
+    private final List<String> teamNames = new ArrayList<>();
+    private MappedByteBuffer buffer;
+    private long regionStart;
+
+    private long memberId;
+    private int age;
+    private int teamRef;
+    private int usernameOffset;
+    private int usernameLength;
+
+    public MemberBinaryReader(Path path) throws IOException {
+        this(path, REGION_SIZE);
+    }
+
+    //테스트에서 구간 경계를 작게 잡을 때
+    MemberBinaryReader(Path path, long regionSize) throws IOException {
+        this.path = path;
+        this.regionSize = regionSize;
+        this.channel = FileChannel.open(path);
+        try {
+            this.size = channel.size();
+            if (size < MAGIC.length + 1) {
+                throw new IllegalStateException("not a member export file: " + path);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(regionSize, size));
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalStateException("not a member export file: " + path);
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalStateException("unsupported member export version: " + version);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    //다음 회원 레코드로 이동. TEAM 레코드는 사전에 넣고 건너뜀
+    public boolean next() throws IOException {
+        try {
+            while (true) {
+                ensure(MAX_HEADER);
+                byte type = buffer.get();
+                if (type == END) {
+                    return false;
+                }
+                if (type == TEAM) {
+                    teamIds.add(getVarLong(buffer));
+                    int length = (int) getVarLong(buffer);
+                    require(length);
+                    teamNames.add(decode(buffer.position(), length));
+                    buffer.position(buffer.position() + length);
+                    continue;
+                }
+                if (type != MEMBER) {
+                    throw new IllegalStateException("unknown record type " + type + " at " + position(-1));
+                }
+                memberId = getVarLong(buffer);
+                age = (int) getVarLong(buffer);
+                teamRef = (int) getVarLong(buffer);
+                usernameLength = (int) getVarLong(buffer);
+                require(usernameLength);
+                usernameOffset = buffer.position();
+                buffer.position(usernameOffset + usernameLength);
+                return true;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("truncated member export (no END record): " + path, e);
+        }
+    }
+
+    public long memberId() {
+        return memberId;
+    }
+
+    public int age() {
+        return age;
+    }
+
+    public String username() {
+        return decode(usernameOffset, usernameLength);
+    }
+
+    public Long teamId() {
+        return teamRef == 0 ? null : teamIds.get(teamRef - 1);
+    }
+
+    public String teamName() {
+        return teamRef == 0 ? null : teamNames.get(teamRef - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    //남은 바이트가 부족하면 지금 위치부터 다시 매핑. 이미 파일 끝까지 매핑돼 있으면 그대로 (모자라면 get 에서 underflow)
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes || regionStart + buffer.limit() == size) {
+            return;
+        }
+        long start = position(0);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(Math.max(regionSize, bytes), size - start));
+        regionStart = start;
+    }
+
+    private void require(int bytes) throws IOException {
+        ensure(bytes);
+        if (buffer.remaining() < bytes) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private long position(int offset) {
+        return regionStart + buffer.position() + offset;
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        int position = buffer.position();
+        buffer.position(offset);
+        buffer.get(bytes);
+        buffer.position(position);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package study.querydsl.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.*;
+import static study.querydsl.export.MemberBinaryFormat.*;
+
+/**
+ * {@link MemberBinaryFormat} 파일을 memory-mapped FileChannel 에 순서대로 쓴다.
+ * 한 구간(region)을 다 쓰면 다음 구간을 매핑한다.
+ *
+ * 옆의 임시 파일(.tmp)에 쓰다가 {@link #finish()} 에서 END 를 쓰고 실제 크기로 자른 뒤 원래 이름으로 옮긴다. (atomic move)
+ * finish 없이 close 하면 (중간에 실패) 임시 파일을 지우므로 반쯤 쓴 파일이 완성된 export 처럼 남지 않는다.
+ */
+public class MemberBinaryWriter implements Closeable {
+
+    private static final long REGION_SIZE = 64L << 20;
+
+    private final Path path;
+    private final Path temp;
+    private final long regionSize;
+    private final FileChannel channel;
+    private final Map<Long, Integer> teamRefs = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private long regionStart;
+    private long memberCount;
+    private boolean finished;
+
+    public MemberBinaryWriter(Path path) throws IOException {
+        this(path, REGION_SIZE);
+    }
+
+    //테스트에서 구간 경계를 작게 잡을 때
+    MemberBinaryWriter(Path path, long regionSize) throws IOException {
+        this.path = path;
+        this.regionSize = regionSize;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+    }
+
+    public void write(Long memberId, String username, int age, Long teamId, String teamName) throws IOException {
+        int teamRef = teamId == null ? 0 : teamRef(teamId, teamName);
+        byte[] name = username == null ? new byte[0] : username.getBytes(StandardCharsets.UTF_8);
+
+        ensure(1 + MAX_VARINT_SIZE * 4 + name.length);
+        buffer.put(MEMBER);
+        putVarLong(buffer, memberId);
+        putVarLong(buffer, age);
+        putVarLong(buffer, teamRef);
+        putVarLong(buffer, name.length);
+        buffer.put(name);
+        memberCount++;
+    }
+
+    private int teamRef(Long teamId, String teamName) throws IOException {
+        Integer ref = teamRefs.get(teamId);
+        if (ref != null) {
+            return ref;
+        }
+        byte[] name = teamName == null ? new byte[0] : teamName.getBytes(StandardCharsets.UTF_8);
+        ensure(1 + MAX_VARINT_SIZE * 2 + name.length);
+        buffer.put(TEAM);
+        putVarLong(buffer, teamId);
+        putVarLong(buffer, name.length);
+        buffer.put(name);
+
+        int newRef = teamRefs.size() + 1;
+        teamRefs.put(teamId, newRef);
+        return newRef;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        regionStart += buffer.position();
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, bytes));
+    }
+
+    public long getMemberCount() {
+        return memberCount;
+    }
+
+    //성공했을 때만 부름. END 를 쓰고 파일을 제자리로 옮김
+    public void finish() throws IOException {
+        ensure(1);
+        buffer.put(END);
+        long size = regionStart + buffer.position();
+        buffer.force();
+        channel.truncate(size);
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        channel.close();
+        Files.deleteIfExists(temp);
+    }
+}
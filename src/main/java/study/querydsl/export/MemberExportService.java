@@ -0,0 +1,123 @@
+package study.querydsl.export;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.TeamJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 전체 회원을 팀과 함께 {@link MemberBinaryFormat} 파일로 내보내고 다시 읽어들인다.
+ */
+@Component
+public class MemberExportService {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final MemberJpaRepository memberJpaRepository;
+    private final TeamJpaRepository teamJpaRepository;
+
+    public MemberExportService(EntityManager em, JPAQueryFactory queryFactory,
+                               MemberJpaRepository memberJpaRepository, TeamJpaRepository teamJpaRepository) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.memberJpaRepository = memberJpaRepository;
+        this.teamJpaRepository = teamJpaRepository;
+    }
+
+    //엔티티를 만들지 않고 스칼라 컬럼만 커서로 흘려서 바로 파일에 씀
+    @Transactional(readOnly = true)
+    public long exportTo(Path path) {
+        try (MemberBinaryWriter writer = new MemberBinaryWriter(path);
+             CloseableIterator<Tuple> rows = queryFactory
+                     .select(member.id, member.username, member.age, team.id, team.name)
+                     .from(member)
+                     .leftJoin(member.team, team)
+                     .orderBy(member.id.asc())
+                     .setHint("org.hibernate.fetchSize", FETCH_SIZE)
+                     .iterate()) {
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                Integer age = row.get(member.age);
+                writer.write(row.get(member.id), row.get(member.username), age == null ? 0 : age,
+                        row.get(team.id), row.get(team.name));
+            }
+            writer.finish();
+            return writer.getMemberCount();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //파일의 팀 이름 기준으로 팀을 만들고(이미 있으면 재사용) 회원은 새 id 로 batch insert
+    //팀은 members 가 로딩 안된 상태로 들고 있어서 회원을 붙여도 컬렉션이 커지지 않음 (clear 후 준영속이어도 fk 만 쓰임)
+    @Transactional
+    public long importFrom(Path path) {
+        try (MemberBinaryReader reader = new MemberBinaryReader(path)) {
+            Map<Long, Team> teams = new HashMap<>();
+            List<Member> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            long count = 0;
+            while (reader.next()) {
+                Team memberTeam = null;
+                if (reader.teamId() != null) {
+                    memberTeam = teams.computeIfAbsent(reader.teamId(), id -> findOrCreateTeam(reader.teamName()));
+                }
+                chunk.add(new Member(reader.username(), reader.age(), memberTeam));
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    count += flushChunk(chunk);
+                }
+            }
+            return count + flushChunk(chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Team findOrCreateTeam(String name) {
+        Team findTeam = queryFactory
+                .selectFrom(team)
+                .where(teamNameEq(name))
+                .fetchFirst();
+        if (findTeam != null) {
+            return findTeam;
+        }
+        Team newTeam = new Team(name);
+        teamJpaRepository.save(newTeam);
+        em.flush();
+        em.detach(newTeam);
+        return em.find(Team.class, newTeam.getId());
+    }
+
+    private long flushChunk(List<Member> chunk) {
+        int size = chunk.size();
+        memberJpaRepository.saveAll(chunk);
+        em.flush();
+        em.clear();
+        chunk.clear();
+        return size;
+    }
+
+    private BooleanExpression teamNameEq(String name) {
+        return name == null ? team.name.isNull() : team.name.eq(name);
+    }
+}
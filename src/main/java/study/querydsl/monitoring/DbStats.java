@@ -0,0 +1,105 @@
+package study.querydsl.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 한 레파지토리 메서드(또는 요청 전체)가 쓴 db 자원
+ *
+ * elapsed 는 하위 레파지토리 호출을 뺀 메서드 자신의 시간이고,
+ * other = elapsed - 커넥션 대기 - statement 실행 이라서 엔티티 hydration, flush, dto 변환 같은 jvm 쪽 시간에 가깝다.
+ */
+public class DbStats {
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder elapsedNanos = new LongAdder();
+    final LongAdder connections = new LongAdder();
+    final LongAdder poolWaitNanos = new LongAdder();
+    final LongAdder statements = new LongAdder();
+    final LongAdder statementNanos = new LongAdder();
+    final LongAdder entitiesLoaded = new LongAdder();
+    final LongAdder entitiesFetched = new LongAdder();
+    final LongAdder collectionsLoaded = new LongAdder();
+    final LongAdder collectionsFetched = new LongAdder();
+    final LongAdder flushes = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+    final LongAdder cacheMisses = new LongAdder();
+
+    void add(DbStats other) {
+        calls.add(other.getCalls());
+        elapsedNanos.add(other.elapsedNanos.sum());
+        connections.add(other.getConnections());
+        poolWaitNanos.add(other.poolWaitNanos.sum());
+        statements.add(other.getStatements());
+        statementNanos.add(other.statementNanos.sum());
+        entitiesLoaded.add(other.getEntitiesLoaded());
+        entitiesFetched.add(other.getEntitiesFetched());
+        collectionsLoaded.add(other.getCollectionsLoaded());
+        collectionsFetched.add(other.getCollectionsFetched());
+        flushes.add(other.getFlushes());
+        cacheHits.add(other.getCacheHits());
+        cacheMisses.add(other.getCacheMisses());
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public double getElapsedMillis() {
+        return millis(elapsedNanos.sum());
+    }
+
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    public double getPoolWaitMillis() {
+        return millis(poolWaitNanos.sum());
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public double getStatementMillis() {
+        return millis(statementNanos.sum());
+    }
+
+    public double getOtherMillis() {
+        return millis(Math.max(0, elapsedNanos.sum() - poolWaitNanos.sum() - statementNanos.sum()));
+    }
+
+    //1차 캐시에 없어서 sql 결과로 만든 엔티티
+    public long getEntitiesLoaded() {
+        return entitiesLoaded.sum();
+    }
+
+    //프록시 초기화 같이 따로 select 를 한번 더 날려서 가져온 엔티티
+    public long getEntitiesFetched() {
+        return entitiesFetched.sum();
+    }
+
+    public long getCollectionsLoaded() {
+        return collectionsLoaded.sum();
+    }
+
+    public long getCollectionsFetched() {
+        return collectionsFetched.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    //2차 캐시 (엔티티, 컬렉션)
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 요청별 db 자원 사용량 (커넥션 풀 대기, statement 실행, 하이버네이트 세션 통계)
+ *
+ * p6spy 로 커넥션 획득 시간과 statement 시간을, {@link TelemetryStatistics} 로 하이버네이트 통계를 받아서
+ * 지금 요청의 {@link RequestTelemetry} 에 쌓는다. 끝난 요청은 레파지토리 메서드별, 엔드포인트별로 합산하고
+ * 최근 capacity 개는 request id 로 찾을 수 있게 들고 있다. (/actuator/dbtelemetry)
+ */
+@Component
+public class DbTelemetry extends SimpleJdbcEventListener implements HibernatePropertiesCustomizer {
+
+    private final Map<String, DbStats> byMethod = new ConcurrentHashMap<>();
+    private final Map<String, DbStats> byEndpoint = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<RequestTelemetry> recent;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public DbTelemetry(@Value("${study.querydsl.telemetry.capacity:200}") int capacity) {
+        this.recent = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATS_BUILDER, (StatisticsFactory) TelemetryStatistics::new);
+        //통계가 꺼져 있으면 하이버네이트가 통계 메서드를 안 불러서 요청별 엔티티, 컬렉션, flush, 캐시 수를 못 셈
+        hibernateProperties.putIfAbsent(AvailableSettings.GENERATE_STATISTICS, "true");
+        //세션이 닫힐 때마다 남는 세션 통계 info 로그는 끔
+        hibernateProperties.putIfAbsent(AvailableSettings.LOG_SESSION_METRICS, "false");
+    }
+
+    //hikari 에서 커넥션을 받을 때까지 걸린 시간 = 풀 대기
+    @Override
+    public void onAfterGetConnection(ConnectionInformation connectionInformation, SQLException e) {
+        long waitNanos = connectionInformation.getTimeToGetConnectionNs();
+        RequestTelemetry.record(stats -> {
+            stats.connections.increment();
+            stats.poolWaitNanos.add(waitNanos);
+        });
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        RequestTelemetry.record(stats -> {
+            stats.statements.increment();
+            stats.statementNanos.add(timeElapsedNanos);
+        });
+    }
+
+    public void completed(RequestTelemetry telemetry) {
+        telemetry.getMethods().forEach((method, stats) ->
+                byMethod.computeIfAbsent(method, key -> new DbStats()).add(stats));
+        if (telemetry.getEndpoint() != null) {
+            byEndpoint.computeIfAbsent(telemetry.getEndpoint(), key -> new DbStats()).add(telemetry.getTotal());
+        }
+        recent.set((int) (sequence.getAndIncrement() % recent.length()), telemetry);
+    }
+
+    public Map<String, DbStats> byMethod() {
+        return new TreeMap<>(byMethod);
+    }
+
+    public Map<String, DbStats> byEndpoint() {
+        return new TreeMap<>(byEndpoint);
+    }
+
+    //최근 요청, 최신 순
+    public List<RequestTelemetry> recent() {
+        List<RequestTelemetry> result = new ArrayList<>();
+        for (int i = 0; i < recent.length(); i++) {
+            RequestTelemetry telemetry = recent.get(i);
+            if (telemetry != null) {
+                result.add(telemetry);
+            }
+        }
+        result.sort(Comparator.comparing(RequestTelemetry::getStartedAt).reversed());
+        return result;
+    }
+
+    public RequestTelemetry find(String requestId) {
+        for (int i = 0; i < recent.length(); i++) {
+            RequestTelemetry telemetry = recent.get(i);
+            if (telemetry != null && telemetry.getRequestId().equals(requestId)) {
+                return telemetry;
+            }
+        }
+        return null;
+    }
+
+    public void reset() {
+        byMethod.clear();
+        byEndpoint.clear();
+        for (int i = 0; i < recent.length(); i++) {
+            recent.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//GET    /actuator/dbtelemetry : 레파지토리 메서드별, 엔드포인트별 합계와 최근 요청
+//GET    /actuator/dbtelemetry/{requestId} : 요청 하나 (응답 헤더 X-Request-Id)
+//DELETE /actuator/dbtelemetry : 초기화
+@Component
+@Endpoint(id = "dbtelemetry")
+public class DbTelemetryEndpoint {
+
+    private final DbTelemetry dbTelemetry;
+
+    public DbTelemetryEndpoint(DbTelemetry dbTelemetry) {
+        this.dbTelemetry = dbTelemetry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> telemetry() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("methods", dbTelemetry.byMethod());
+        result.put("endpoints", dbTelemetry.byEndpoint());
+        result.put("requests", dbTelemetry.recent());
+        return result;
+    }
+
+    @ReadOperation
+    public RequestTelemetry request(@Selector String requestId) {
+        return dbTelemetry.find(requestId);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        dbTelemetry.reset();
+    }
+}
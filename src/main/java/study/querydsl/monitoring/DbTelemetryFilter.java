@@ -0,0 +1,83 @@
+package study.querydsl.monitoring;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * 요청마다 request id 를 붙이고 (X-Request-Id 가 오면 그대로 사용) {@link RequestTelemetry} 를 건다.
+ * DeferredResult 로 비동기 처리되는 요청은 응답이 끝날 때 집계한다.
+ */
+@Component
+public class DbTelemetryFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    static final String UNMATCHED = "UNMATCHED";
+
+    private final DbTelemetry dbTelemetry;
+
+    public DbTelemetryFilter(DbTelemetry dbTelemetry) {
+        this.dbTelemetry = dbTelemetry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (!StringUtils.hasText(requestId)) {
+            requestId = UUID.randomUUID().toString();
+        }
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+
+        RequestTelemetry telemetry = RequestTelemetry.begin(requestId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTelemetry.end();
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        complete(telemetry, request);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                complete(telemetry, request);
+            }
+        }
+    }
+
+    //매핑 안 된 요청(404, 정적 경로)은 url 마다 엔드포인트가 늘어나지 않게 하나로 묶음
+    private void complete(RequestTelemetry telemetry, HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        telemetry.finish(request.getMethod() + " " + (pattern != null ? pattern : UNMATCHED));
+        dbTelemetry.completed(telemetry);
+    }
+}
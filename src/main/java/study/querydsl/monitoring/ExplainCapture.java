@@ -0,0 +1,121 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.QueryShape;
+
+import javax.annotation.PreDestroy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 느린 querydsl 검색 sql 의 실행 계획을 자동으로 떠둔다.
+ *
+ * {@link QueryShape} 가 걸린 구간에서 threshold 를 넘은 select 가 나오면 같은 sql, 같은 파라미터로
+ * h2 의 EXPLAIN 을 요청 스레드가 아닌 별도 스레드에서 실행한다.
+ * EXPLAIN ANALYZE 는 느린 쿼리를 한번 더 실행하므로 analyze 를 켰을 때만 쓴다.
+ * 메서드 + 조건 모양 + sql 마다 한번만 뜨므로 같은 나쁜 계획은 한번만 보인다. (/actuator/explains)
+ */
+@Slf4j
+@Component
+public class ExplainCapture extends SimpleJdbcEventListener {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long thresholdNanos;
+    private final int maxPlans;
+    private final String explain;
+    private final Map<String, CapturedPlan> plans = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "explain-capture");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //JdbcTemplate -> DataSource -> p6spy 리스너(자기 자신) 순환을 끊기 위해 @Lazy
+    public ExplainCapture(@Lazy JdbcTemplate jdbcTemplate,
+                          @Value("${study.querydsl.explain.threshold:500ms}") Duration threshold,
+                          @Value("${study.querydsl.explain.max-plans:1000}") int maxPlans,
+                          @Value("${study.querydsl.explain.analyze:false}") boolean analyze) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.thresholdNanos = threshold.toNanos();
+        this.maxPlans = maxPlans;
+        this.explain = analyze ? "EXPLAIN ANALYZE " : "EXPLAIN ";
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        QueryShape queryShape = QueryShape.current();
+        if (queryShape == null || e != null || timeElapsedNanos < thresholdNanos) {
+            return;
+        }
+        String key = queryShape.getMethod() + "|" + queryShape.getShape() + "|" + statementInformation.getSql();
+        if (plans.size() >= maxPlans || plans.containsKey(key)) {
+            return;
+        }
+        CapturedPlan plan = new CapturedPlan(queryShape.getMethod(), queryShape.getShape(),
+                statementInformation.getSqlWithValues(), timeElapsedNanos / 1_000_000);
+        if (plans.putIfAbsent(key, plan) != null) {
+            return;
+        }
+        try {
+            executor.submit(() -> explain(plan));
+        } catch (RejectedExecutionException rejected) {
+            plans.remove(key);
+        }
+    }
+
+    private void explain(CapturedPlan plan) {
+        try {
+            String result = String.join("\n",
+                    jdbcTemplate.queryForList(explain + plan.getSql(), String.class));
+            plan.complete(result);
+            log.warn("slow {} [{}] {} ms, plan:\n{}", plan.getMethod(), plan.getShape(), plan.getMillis(), result);
+        } catch (RuntimeException ex) {
+            plan.complete("explain failed: " + ex.getMessage());
+        }
+    }
+
+    public Collection<CapturedPlan> plans() {
+        return new ArrayList<>(plans.values());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Getter
+    public static class CapturedPlan {
+        private final String method;
+        private final String shape;
+        private final String sql;
+        private final long millis;
+        private final Instant capturedAt = Instant.now();
+        private volatile String plan;
+
+        CapturedPlan(String method, String shape, String sql, long millis) {
+            this.method = method;
+            this.shape = shape;
+            this.sql = sql;
+            this.millis = millis;
+        }
+
+        void complete(String plan) {
+            this.plan = plan;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+//GET /actuator/explains : 조건 모양별로 한번씩 떠둔 느린 쿼리 실행 계획
+@Component
+@Endpoint(id = "explains")
+public class ExplainEndpoint {
+
+    private final ExplainCapture explainCapture;
+
+    public ExplainEndpoint(ExplainCapture explainCapture) {
+        this.explainCapture = explainCapture;
+    }
+
+    @ReadOperation
+    public Collection<ExplainCapture.CapturedPlan> explains() {
+        return explainCapture.plans();
+    }
+}
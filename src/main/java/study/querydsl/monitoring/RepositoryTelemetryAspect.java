@@ -0,0 +1,43 @@
+package study.querydsl.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 레파지토리 메서드 구간을 {@link RequestTelemetry} 에 표시한다. (@Repository 클래스, spring data 레파지토리)
+ * 트랜잭션 시작 때 커넥션을 받는 시간도 메서드 안으로 잡히도록 트랜잭션 advice 보다 바깥에서 돈다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RepositoryTelemetryAspect {
+
+    @Around("@within(org.springframework.stereotype.Repository) || target(org.springframework.data.repository.Repository)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (RequestTelemetry.current() == null) {
+            return joinPoint.proceed();
+        }
+        RequestTelemetry.enter(repositoryName(joinPoint.getTarget()) + "." + joinPoint.getSignature().getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            RequestTelemetry.exit();
+        }
+    }
+
+    //spring data 레파지토리는 target 이 프록시라서 우리가 선언한 인터페이스 이름을 씀
+    private static String repositoryName(Object target) {
+        for (Class<?> type : target.getClass().getInterfaces()) {
+            if (type != Repository.class && Repository.class.isAssignableFrom(type)) {
+                return type.getSimpleName();
+            }
+        }
+        return ClassUtils.getUserClass(target).getSimpleName();
+    }
+}
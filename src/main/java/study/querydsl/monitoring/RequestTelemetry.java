@@ -0,0 +1,140 @@
+package study.querydsl.monitoring;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 요청 하나가 쓴 db 자원을 레파지토리 메서드별로 모은다.
+ *
+ * {@link DbTelemetryFilter} 가 요청 스레드에 걸고, 검색처럼 다른 스레드에서 실행되는 작업은 {@link #run} 으로 넘겨준다.
+ * 커넥션, statement, 하이버네이트 통계는 그 스레드에서 가장 안쪽에 실행 중인 레파지토리 메서드로 잡힌다.
+ */
+public final class RequestTelemetry {
+
+    public static final String OUTSIDE_REPOSITORY = "(outside repository)";
+
+    private static final ThreadLocal<RequestTelemetry> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Deque<Frame>> FRAMES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final String requestId;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, DbStats> byMethod = new ConcurrentHashMap<>();
+    private volatile String endpoint;
+    private volatile long elapsedNanos;
+
+    private RequestTelemetry(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public static RequestTelemetry begin(String requestId) {
+        RequestTelemetry telemetry = new RequestTelemetry(requestId);
+        CURRENT.set(telemetry);
+        return telemetry;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+        FRAMES.remove();
+    }
+
+    public static RequestTelemetry current() {
+        return CURRENT.get();
+    }
+
+    //다른 스레드에서 요청의 작업을 실행할 때
+    public static <T> T run(RequestTelemetry telemetry, Supplier<T> work) {
+        RequestTelemetry previous = CURRENT.get();
+        CURRENT.set(telemetry);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    static void enter(String method) {
+        FRAMES.get().push(new Frame(method, System.nanoTime()));
+    }
+
+    static void exit() {
+        Deque<Frame> frames = FRAMES.get();
+        Frame frame = frames.pop();
+        long elapsed = System.nanoTime() - frame.startNanos;
+        RequestTelemetry telemetry = CURRENT.get();
+        if (telemetry != null) {
+            DbStats stats = telemetry.stats(frame.method);
+            stats.calls.increment();
+            stats.elapsedNanos.add(elapsed - frame.childNanos);
+        }
+        Frame parent = frames.peek();
+        if (parent != null) {
+            parent.childNanos += elapsed;
+        }
+    }
+
+    static void record(Consumer<DbStats> update) {
+        RequestTelemetry telemetry = CURRENT.get();
+        if (telemetry == null) {
+            return;
+        }
+        Frame frame = FRAMES.get().peek();
+        update.accept(telemetry.stats(frame == null ? OUTSIDE_REPOSITORY : frame.method));
+    }
+
+    void finish(String endpoint) {
+        this.endpoint = endpoint;
+        this.elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    private DbStats stats(String method) {
+        return byMethod.computeIfAbsent(method, key -> new DbStats());
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    public DbStats getTotal() {
+        DbStats total = new DbStats();
+        byMethod.values().forEach(total::add);
+        return total;
+    }
+
+    public Map<String, DbStats> getMethods() {
+        return new LinkedHashMap<>(byMethod);
+    }
+
+    private static class Frame {
+        private final String method;
+        private final long startNanos;
+        private long childNanos;
+
+        Frame(String method, long startNanos) {
+            this.method = method;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.monitoring;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//GET  /actuator/slowqueries : 설정과 최근 느린 쿼리 (가장 느린 것들이 아니라 최근 capacity 개를 느린 순으로)
+//POST /actuator/slowqueries {"thresholdMillis": 100, "sampleRate": 0.01} : 재기동 없이 설정 변경
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryEndpoint(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public Map<String, Object> slowQueries() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("thresholdMillis", slowQueryLog.getThreshold().toMillis());
+        result.put("sampleRate", slowQueryLog.getSampleRate());
+        result.put("recentQueries", slowQueryLog.recent()); //최근 capacity 개, 느린 순
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> configure(@Nullable Long thresholdMillis, @Nullable Double sampleRate) {
+        if (thresholdMillis != null) {
+            slowQueryLog.setThreshold(Duration.ofMillis(thresholdMillis));
+        }
+        if (sampleRate != null) {
+            try {
+                slowQueryLog.setSampleRate(sampleRate);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage()); //400
+            }
+        }
+        return slowQueries();
+    }
+}
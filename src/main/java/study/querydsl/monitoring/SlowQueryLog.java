@@ -0,0 +1,113 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 느린 sql 만 남기는 p6spy 리스너
+ *
+ * p6spy 기본 로깅(모든 statement 포맷팅, 출력)은 끄고, 실행 시간이 threshold 를 넘은 statement 와
+ * sampleRate 비율로 뽑힌 statement 만 바인딩 값과 함께 로그로 남긴다.
+ * 느린 statement 는 최근 capacity 개를 링 버퍼에 들고 있고 /actuator/slowqueries 로 조회, 설정 변경한다.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog extends SimpleJdbcEventListener {
+
+    private final AtomicReferenceArray<SlowQuery> ring;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long thresholdNanos;
+    private volatile double sampleRate;
+
+    public SlowQueryLog(@Value("${study.querydsl.slow-query.threshold:200ms}") Duration threshold,
+                        @Value("${study.querydsl.slow-query.sample-rate:0}") double sampleRate,
+                        @Value("${study.querydsl.slow-query.capacity:100}") int capacity) {
+        this.ring = new AtomicReferenceArray<>(checkCapacity(capacity));
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = checkSampleRate(sampleRate);
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos >= thresholdNanos) {
+            SlowQuery slowQuery = new SlowQuery(Instant.now(), timeElapsedNanos / 1_000_000,
+                    statementInformation.getSqlWithValues());
+            ring.set((int) (sequence.getAndIncrement() % ring.length()), slowQuery);
+            log.warn("slow query {} ms: {}", slowQuery.getMillis(), slowQuery.getSql());
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.info("sampled query {} ms: {}", timeElapsedNanos / 1_000_000, statementInformation.getSqlWithValues());
+        }
+    }
+
+    //가장 느린 n 개가 아니라 최근 느린 쿼리 capacity 개를 느린 순으로 정렬한 것
+    public List<SlowQuery> recent() {
+        List<SlowQuery> result = new ArrayList<>();
+        for (int i = 0; i < ring.length(); i++) {
+            SlowQuery slowQuery = ring.get(i);
+            if (slowQuery != null) {
+                result.add(slowQuery);
+            }
+        }
+        result.sort(Comparator.comparingLong(SlowQuery::getMillis).reversed());
+        return result;
+    }
+
+    public Duration getThreshold() {
+        return Duration.ofNanos(thresholdNanos);
+    }
+
+    public void setThreshold(Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = checkSampleRate(sampleRate);
+    }
+
+    //0 이면 링 인덱스 계산(% 0)에서, 음수면 배열 생성에서 터지므로 기동 때 거름
+    private static int checkCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        return capacity;
+    }
+
+    //NaN 도 거름
+    private static double checkSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("sample-rate must be between 0 and 1: " + sampleRate);
+        }
+        return sampleRate;
+    }
+
+    @Getter
+    public static class SlowQuery {
+        private final Instant executedAt;
+        private final long millis;
+        private final String sql;
+
+        SlowQuery(Instant executedAt, long millis, String sql) {
+            this.executedAt = executedAt;
+            this.millis = millis;
+            this.sql = sql;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.monitoring;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.model.domain.NavigableRole;
+import org.hibernate.stat.internal.StatisticsImpl;
+
+/**
+ * 하이버네이트 통계 중 엔티티/컬렉션 로딩, flush, 2차 캐시 hit/miss 를 {@link RequestTelemetry} 로도 넘긴다.
+ *
+ * 하이버네이트는 isStatisticsEnabled() 가 true 일 때만 통계 메서드를 부르므로 통계가 켜져 있어야 한다. ({@link DbTelemetry} 가 켬)
+ * 스레드마다 켜면 여기서 안 가로챈 전역 카운터까지 쌓이므로 isStatisticsEnabled() 는 그대로 두고,
+ * 가로챈 카운터만 요청 telemetry 에 넘긴 뒤 전역 통계가 켜져 있을 때 원래대로 센다.
+ */
+class TelemetryStatistics extends StatisticsImpl {
+
+    TelemetryStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+    }
+
+    @Override
+    public void loadEntity(String entityName) {
+        RequestTelemetry.record(stats -> stats.entitiesLoaded.increment());
+        if (super.isStatisticsEnabled()) {
+            super.loadEntity(entityName);
+        }
+    }
+
+    @Override
+    public void fetchEntity(String entityName) {
+        RequestTelemetry.record(stats -> stats.entitiesFetched.increment());
+        if (super.isStatisticsEnabled()) {
+            super.fetchEntity(entityName);
+        }
+    }
+
+    @Override
+    public void loadCollection(String role) {
+        RequestTelemetry.record(stats -> stats.collectionsLoaded.increment());
+        if (super.isStatisticsEnabled()) {
+            super.loadCollection(role);
+        }
+    }
+
+    @Override
+    public void fetchCollection(String role) {
+        RequestTelemetry.record(stats -> stats.collectionsFetched.increment());
+        if (super.isStatisticsEnabled()) {
+            super.fetchCollection(role);
+        }
+    }
+
+    @Override
+    public void flush() {
+        RequestTelemetry.record(stats -> stats.flushes.increment());
+        if (super.isStatisticsEnabled()) {
+            super.flush();
+        }
+    }
+
+    @Override
+    public void entityCacheHit(NavigableRole entityName, String regionName) {
+        RequestTelemetry.record(stats -> stats.cacheHits.increment());
+        if (super.isStatisticsEnabled()) {
+            super.entityCacheHit(entityName, regionName);
+        }
+    }
+
+    @Override
+    public void entityCacheMiss(NavigableRole entityName, String regionName) {
+        RequestTelemetry.record(stats -> stats.cacheMisses.increment());
+        if (super.isStatisticsEnabled()) {
+            super.entityCacheMiss(entityName, regionName);
+        }
+    }
+
+    @Override
+    public void collectionCacheHit(NavigableRole collectionRole, String regionName) {
+        RequestTelemetry.record(stats -> stats.cacheHits.increment());
+        if (super.isStatisticsEnabled()) {
+            super.collectionCacheHit(collectionRole, regionName);
+        }
+    }
+
+    @Override
+    public void collectionCacheMiss(NavigableRole collectionRole, String regionName) {
+        RequestTelemetry.record(stats -> stats.cacheMisses.increment());
+        if (super.isStatisticsEnabled()) {
+            super.collectionCacheMiss(collectionRole, regionName);
+        }
+    }
+}
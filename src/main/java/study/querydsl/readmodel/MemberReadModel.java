@@ -0,0 +1,91 @@
+package study.querydsl.readmodel;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 조회용 off-heap 스냅샷 ({@link OffHeapMemberStore}).
+ *
+ * db 에서 스칼라 컬럼만 커서로 읽어 새 스냅샷을 만들고 통째로 바꿔 끼운다. 엔티티를 만들지 않는다.
+ * 스냅샷이라 refresh 이후의 변경은 보이지 않는다. 최신 값이 필요한 조회는 레파지토리를 쓴다.
+ */
+@Slf4j
+@Component
+public class MemberReadModel {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean loadOnStartup;
+    private volatile OffHeapMemberStore store = OffHeapMemberStore.empty();
+
+    public MemberReadModel(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                           @Value("${study.querydsl.read-model.load-on-startup:false}") boolean loadOnStartup) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.loadOnStartup = loadOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (loadOnStartup) {
+            OffHeapMemberStore loaded = refresh();
+            log.info("member read model loaded: members={}, offHeapBytes={}", loaded.size(), loaded.offHeapBytes());
+        }
+    }
+
+    //새 스냅샷을 다 만든 뒤에 바꾸므로 만드는 동안에도 이전 스냅샷으로 조회됨
+    public OffHeapMemberStore refresh() {
+        OffHeapMemberStore loaded = readOnlyTx.execute(status -> load());
+        store = loaded;
+        return loaded;
+    }
+
+    public Optional<MemberTeamDto> findById(Long memberId) {
+        return memberId == null ? Optional.empty() : store.findById(memberId);
+    }
+
+    public List<MemberTeamDto> findByUsername(String username) {
+        return store.findByUsername(username);
+    }
+
+    public OffHeapMemberStore getStore() {
+        return store;
+    }
+
+    private OffHeapMemberStore load() {
+        Long count = queryFactory.select(member.count()).from(member).fetchOne();
+        OffHeapMemberStore.Builder builder = OffHeapMemberStore.builder(count == null ? 0 : count.intValue());
+        try (CloseableIterator<Tuple> rows = queryFactory
+                .select(member.id, member.username, member.age, team.id, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .setHint("org.hibernate.fetchSize", FETCH_SIZE)
+                .iterate()) {
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                Integer age = row.get(member.age);
+                builder.add(row.get(member.id), row.get(member.username), age == null ? 0 : age,
+                        row.get(team.id), row.get(team.name));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,310 @@
+package study.querydsl.readmodel;
+
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 회원/팀 읽기 전용 스냅샷. 값은 전부 힙 밖(direct ByteBuffer)에 고정 크기 record 로 두고
+ * 엔티티나 String 을 들고 있지 않아서 회원이 수백만이어도 old gen 에 남는 객체가 버퍼 몇 개뿐이다.
+ * 조회할 때만 MemberTeamDto 를 만들어 준다. (금방 버려지는 young gen 객체)
+ *
+ * <pre>
+ * member record (24) : memberId(8) | age(4) | team 번호(4, -1=팀없음) | username offset(4) | username length(4, -1=null)
+ * team record   (16) : teamId(8) | name offset(4) | name length(4, -1=null)
+ * strings            : utf-8 바이트를 이어 붙인 영역. record 가 offset, length 로 가리킴
+ * id index       (16) : open addressing, linear probing. memberId(8, 0=빈칸) | member 번호(4) | 0(4)
+ * username index  (8) : open addressing. username hash(4) | member 번호 + 1(4, 0=빈칸). 같은 이름이면 slot 여러개
+ * </pre>
+ * 인덱스는 절반 이하로만 채운다. 만든 뒤로는 바뀌지 않으므로 여러 스레드가 락 없이 읽는다. (절대 위치 get 만 씀)
+ */
+public final class OffHeapMemberStore {
+
+    private static final int MEMBER_RECORD = 24;
+    private static final int TEAM_RECORD = 16;
+    private static final int ID_SLOT = 16;
+    private static final int NAME_SLOT = 8;
+    private static final int NO_TEAM = -1;
+    private static final int NULL_STRING = -1;
+
+    private final ByteBuffer members;
+    private final ByteBuffer teams;
+    private final ByteBuffer strings;
+    private final ByteBuffer idIndex;
+    private final ByteBuffer nameIndex;
+    private final int memberCount;
+    private final int idMask;
+    private final int nameMask;
+
+    private OffHeapMemberStore(ByteBuffer members, ByteBuffer teams, ByteBuffer strings, int memberCount) {
+        this.members = members;
+        this.teams = teams;
+        this.strings = strings;
+        this.memberCount = memberCount;
+        int capacity = tableCapacity(memberCount);
+        this.idIndex = ByteBuffer.allocateDirect(checkedSize(capacity, ID_SLOT));
+        this.nameIndex = ByteBuffer.allocateDirect(checkedSize(capacity, NAME_SLOT));
+        this.idMask = capacity - 1;
+        this.nameMask = capacity - 1;
+        for (int slot = 0; slot < memberCount; slot++) {
+            indexId(slot);
+            indexName(slot);
+        }
+    }
+
+    public static OffHeapMemberStore empty() {
+        return builder(0).build();
+    }
+
+    public static Builder builder(int expectedMembers) {
+        return new Builder(expectedMembers);
+    }
+
+    public Optional<MemberTeamDto> findById(long memberId) {
+        int slot = slotOf(memberId);
+        return slot < 0 ? Optional.empty() : Optional.of(toDto(slot));
+    }
+
+    public List<MemberTeamDto> findByUsername(String username) {
+        if (username == null) {
+            return Collections.emptyList();
+        }
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(name);
+        List<MemberTeamDto> result = new ArrayList<>(1);
+        for (int i = mix(hash) & nameMask; ; i = (i + 1) & nameMask) {
+            int entry = nameIndex.getInt(i * NAME_SLOT + 4);
+            if (entry == 0) {
+                return result;
+            }
+            int slot = entry - 1;
+            if (nameIndex.getInt(i * NAME_SLOT) == hash && usernameEquals(slot, name)) {
+                result.add(toDto(slot));
+            }
+        }
+    }
+
+    public boolean contains(long memberId) {
+        return slotOf(memberId) >= 0;
+    }
+
+    public int size() {
+        return memberCount;
+    }
+
+    public long offHeapBytes() {
+        return (long) members.capacity() + teams.capacity() + strings.capacity()
+                + idIndex.capacity() + nameIndex.capacity();
+    }
+
+    private int slotOf(long memberId) {
+        for (int i = mix(memberId) & idMask; ; i = (i + 1) & idMask) {
+            long key = idIndex.getLong(i * ID_SLOT);
+            if (key == 0) {
+                return -1;
+            }
+            if (key == memberId) {
+                return idIndex.getInt(i * ID_SLOT + 8);
+            }
+        }
+    }
+
+    private MemberTeamDto toDto(int slot) {
+        int base = slot * MEMBER_RECORD;
+        int teamSlot = members.getInt(base + 12);
+        Long teamId = null;
+        String teamName = null;
+        if (teamSlot != NO_TEAM) {
+            int teamBase = teamSlot * TEAM_RECORD;
+            teamId = teams.getLong(teamBase);
+            teamName = string(teams.getInt(teamBase + 8), teams.getInt(teamBase + 12));
+        }
+        return new MemberTeamDto(members.getLong(base), string(members.getInt(base + 16), members.getInt(base + 20)),
+                members.getInt(base + 8), teamId, teamName);
+    }
+
+    private String string(int offset, int length) {
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = strings.duplicate(); //원본 position 을 건드리지 않게
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean usernameEquals(int slot, byte[] name) {
+        int base = slot * MEMBER_RECORD;
+        int offset = members.getInt(base + 16);
+        int length = members.getInt(base + 20);
+        if (length != name.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (strings.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void indexId(int slot) {
+        long memberId = members.getLong(slot * MEMBER_RECORD);
+        for (int i = mix(memberId) & idMask; ; i = (i + 1) & idMask) {
+            long key = idIndex.getLong(i * ID_SLOT);
+            if (key == memberId) {
+                throw new IllegalArgumentException("duplicate member id " + memberId);
+            }
+            if (key == 0) {
+                idIndex.putLong(i * ID_SLOT, memberId);
+                idIndex.putInt(i * ID_SLOT + 8, slot);
+                return;
+            }
+        }
+    }
+
+    private void indexName(int slot) {
+        int base = slot * MEMBER_RECORD;
+        int length = members.getInt(base + 20);
+        if (length == NULL_STRING) {
+            return;
+        }
+        int offset = members.getInt(base + 16);
+        int hash = hash(strings, offset, length);
+        for (int i = mix(hash) & nameMask; ; i = (i + 1) & nameMask) {
+            if (nameIndex.getInt(i * NAME_SLOT + 4) == 0) {
+                nameIndex.putInt(i * NAME_SLOT, hash);
+                nameIndex.putInt(i * NAME_SLOT + 4, slot + 1);
+                return;
+            }
+        }
+    }
+
+    //FNV-1a
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (buffer.get(offset + i) & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    //2의 거듭제곱, 회원 수의 2배 이상
+    private static int tableCapacity(int count) {
+        int capacity = 2;
+        while (capacity < count * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int checkedSize(long count, int recordSize) {
+        long size = count * recordSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("off-heap region too large: " + size + " bytes");
+        }
+        return (int) size;
+    }
+
+    /**
+     * 회원을 한건씩 받아 record 를 쓴다. 버퍼가 차면 두배로 새로 잡아서 옮긴다.
+     * 팀 번호를 찾는 map 만 힙에 있고 (팀 수만큼) build 하고 나면 버린다.
+     */
+    public static final class Builder {
+
+        private final Map<Long, Integer> teamSlots = new HashMap<>();
+        private ByteBuffer members;
+        private ByteBuffer teams;
+        private ByteBuffer strings;
+        private int memberCount;
+
+        private Builder(int expectedMembers) {
+            int members = Math.max(expectedMembers, 16);
+            this.members = ByteBuffer.allocateDirect(checkedSize(members, MEMBER_RECORD));
+            this.teams = ByteBuffer.allocateDirect(TEAM_RECORD * 64);
+            this.strings = ByteBuffer.allocateDirect(checkedSize(members, 16));
+        }
+
+        public Builder add(long memberId, String username, int age, Long teamId, String teamName) {
+            if (memberId <= 0) {
+                throw new IllegalArgumentException("member id must be positive: " + memberId);
+            }
+            int teamSlot = teamId == null ? NO_TEAM : teamSlot(teamId, teamName);
+            members = ensure(members, MEMBER_RECORD);
+            members.putLong(memberId);
+            members.putInt(age);
+            members.putInt(teamSlot);
+            putString(members, username);
+            memberCount++;
+            return this;
+        }
+
+        public OffHeapMemberStore build() {
+            return new OffHeapMemberStore(members, teams, strings, memberCount);
+        }
+
+        private int teamSlot(Long teamId, String teamName) {
+            Integer slot = teamSlots.get(teamId);
+            if (slot != null) {
+                return slot;
+            }
+            int newSlot = teamSlots.size();
+            teams = ensure(teams, TEAM_RECORD);
+            teams.putLong(teamId);
+            putString(teams, teamName);
+            teamSlots.put(teamId, newSlot);
+            return newSlot;
+        }
+
+        //record 에 offset, length 를 쓰고 바이트는 strings 영역에 붙임
+        private void putString(ByteBuffer record, String value) {
+            if (value == null) {
+                record.putInt(0);
+                record.putInt(NULL_STRING);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings = ensure(strings, bytes.length);
+            record.putInt(strings.position());
+            record.putInt(bytes.length);
+            strings.put(bytes);
+        }
+
+        private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            ByteBuffer grown = ByteBuffer.allocateDirect(checkedSize(Math.max(buffer.capacity() * 2L,
+                    (long) buffer.position() + bytes), 1));
+            buffer.flip();
+            grown.put(buffer);
+            return grown;
+        }
+    }
+}
@@ -2,28 +2,42 @@ package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.QueryShape;
+import study.querydsl.repository.support.UsernameLookup;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.support.ReadOnlyQuerySupport.readOnly;
 
 @Repository   //dao와 비슷한 개념 //data를 접근하는 계층
 public class MemberJpaRepository { //순수 jpa 레파지토리
 
+    private static final int BULK_CHUNK_SIZE = 1000; //영속성 컨텍스트가 너무 커지지 않도록 끊어서 flush, clear
+
     private final EntityManager em; //순수 jpa는 접근할 때 em이 필요하다.
     private final JPAQueryFactory queryFactory;
+    private final TeamJpaRepository teamJpaRepository;
 
-    public MemberJpaRepository(EntityManager em,JPAQueryFactory jpaQueryFactory) {
+    public MemberJpaRepository(EntityManager em,JPAQueryFactory jpaQueryFactory, TeamJpaRepository teamJpaRepository) {
         this.em = em;
        // this.queryFactory = new JPAQueryFactory(em); //스프링 빈으로 등록 안했을 때
         //Q. 동시성 문제가 발생하지 않나요?  -> em,jpafactory 접근에 대한 동시성 문제는 em에 다 의존하는데
@@ -31,17 +45,88 @@ public class MemberJpaRepository { //순수 jpa 레파지토리
         //어떻게 쓰든.
         this.queryFactory = jpaQueryFactory;
         //스프링 빈으로 등록 했을 때 장점 : @RequiredArgsConstructor, 단점: injection을 두번이나 해줘야한다.
+        this.teamJpaRepository = teamJpaRepository;
     }
 
     public void save(Member member) {
         em.persist(member);
+        if (member.getTeam() != null) {
+            teamJpaRepository.addMemberCount(member.getTeam().getId(), 1);
+        }
+    }
+
+    //대량 등록. id 는 블록으로 미리 받아오기 때문에 insert 가 jdbc batch 로 묶여서 나감
+    //중간에 bulk update 가 끼면 flush 가 일어나 batch 가 깨지므로 팀 카운터는 마지막에 팀별로 한번만 올림
+    public void saveAll(List<Member> members) {
+        Map<Long, Integer> countByTeam = new HashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get(i);
+            em.persist(member);
+            if (member.getTeam() != null) {
+                countByTeam.merge(member.getTeam().getId(), 1, Integer::sum);
+            }
+            if ((i + 1) % BULK_CHUNK_SIZE == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        countByTeam.forEach(teamJpaRepository::addMemberCount);
+    }
+
+    //팀 이동. Team.members 는 로딩하지 않고 양쪽 팀의 memberCount 만 sql 로 증감
+    //없는 회원, 팀이면 ObjectRetrievalFailureException (api 에서는 404)
+    @Transactional
+    public void changeTeam(Long memberId, Long teamId) {
+        //같은 회원을 동시에 옮기는 경우 둘 다 같은 이전 팀을 보고 -1 하지 않도록 회원 row 에 락
+        Member findMember = em.find(Member.class, memberId, LockModeType.PESSIMISTIC_WRITE);
+        if (findMember == null) {
+            throw new ObjectRetrievalFailureException(Member.class, memberId);
+        }
+        Team newTeam = em.find(Team.class, teamId);
+        if (newTeam == null) {
+            throw new ObjectRetrievalFailureException(Team.class, teamId);
+        }
+        Team oldTeam = findMember.getTeam();
+        if (oldTeam != null && oldTeam.getId().equals(newTeam.getId())) {
+            return;
+        }
+        findMember.changeTeam(newTeam);
+
+        //A->B, B->A 이동이 동시에 일어나도 데드락이 나지 않도록 항상 id 순서로 팀 row 를 update
+        if (oldTeam == null) {
+            teamJpaRepository.addMemberCount(newTeam.getId(), 1);
+        } else if (oldTeam.getId() < newTeam.getId()) {
+            teamJpaRepository.addMemberCount(oldTeam.getId(), -1);
+            teamJpaRepository.addMemberCount(newTeam.getId(), 1);
+        } else {
+            teamJpaRepository.addMemberCount(newTeam.getId(), 1);
+            teamJpaRepository.addMemberCount(oldTeam.getId(), -1);
+        }
     }
+
+    //회원 삭제. 소속 팀의 memberCount 도 sql 로 내림
+    //없는 회원이면 ObjectRetrievalFailureException
+    @Transactional
+    public void delete(Long memberId) {
+        //동시에 팀을 옮기는 중이면 옮겨진 뒤의 팀을 내리도록 changeTeam 과 같은 row 락
+        Member findMember = em.find(Member.class, memberId, LockModeType.PESSIMISTIC_WRITE);
+        if (findMember == null) {
+            throw new ObjectRetrievalFailureException(Member.class, memberId);
+        }
+        Team team = findMember.getTeam();
+        em.remove(findMember);
+        if (team != null) {
+            teamJpaRepository.addMemberCount(team.getId(), -1);
+        }
+    }
+
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
+    @Transactional(readOnly = true) //조회한 엔티티를 수정하지 않으므로 스냅샷, flush 없이 조회
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class)
+        return readOnly(em.createQuery("select m from Member m", Member.class))
                 .getResultList();
     }
 
@@ -50,14 +135,17 @@ public class MemberJpaRepository { //순수 jpa 레파지토리
                 .selectFrom(member).fetch();
     }
 
+    @UsernameLookup //없는 이름이면 쿼리 없이 빈 list
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
-        return em.createQuery("select m from Member m where m.username " +
-                "= :username", Member.class)
+        return readOnly(em.createQuery("select m from Member m where m.username " +
+                "= :username", Member.class))
                 .setParameter("username", username)
                 .getResultList();
     } //오타가 나도 실행이 됨
 
 
+    @UsernameLookup
     public List<Member> findByUsername_Querydsl(String username) {
         return queryFactory
                 .selectFrom(member)
@@ -92,11 +180,12 @@ public class MemberJpaRepository { //순수 jpa 레파지토리
                 .fetch(); //한번에.. 성능최적화가 된다..왜..?
     }
 
+    @Transactional(readOnly = true)
     public List<Member> searchMember(MemberSearchCondition condition) {
-        return queryFactory
-                .selectFrom(member)
+        return readOnly(queryFactory
+                .selectFrom(member))
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageBetween(condition.getAgeLoe(),condition.getAgeGoe()))
                 .fetch();
@@ -104,20 +193,20 @@ public class MemberJpaRepository { //순수 jpa 레파지토리
 
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
+        JPAQuery<MemberTeamDto> query = QueryDeadline.applyTo(queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
                         member.age,
                         team.id,
-                        team.name))
+                        team.name)))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch(); //가독성, 재사용성 높다
+                        ageLoe(condition.getAgeLoe()));
+        return QueryShape.run("MemberJpaRepository.search", QueryShape.of(condition, null), query::fetch); //가독성, 재사용성 높다
     }
 
     private BooleanExpression ageBetween(int ageLoe,int ageGoe) { //조립 가능
@@ -138,8 +227,12 @@ public class MemberJpaRepository { //순수 jpa 레파지토리
     }
 
     //Predicate 보다는 BooleanExpression 이 더 났다. 나중에 조합하기 쉽다.
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username)? member.username.eq(username) : null;
+    //대소문자 무시는 lower(username) 대신 정규화 컬럼(username_lower, 인덱스)으로 비교
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (!hasText(username)) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
 }
@@ -1,11 +1,23 @@
 package study.querydsl.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.UsernameLookup;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 public interface MemberRepository extends JpaRepository<Member,Long> ,MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
+    @UsernameLookup //없는 이름이면 쿼리 없이 빈 list (UsernameFilter)
+    @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_FLUSH_MODE, value = "COMMIT")})
     List<Member> findByUsername(String username);
 }
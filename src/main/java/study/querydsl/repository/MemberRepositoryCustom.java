@@ -1,5 +1,9 @@
 package study.querydsl.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberRankDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
@@ -7,4 +11,13 @@ import java.util.List;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
+    Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
+
+    //팀 안에서 나이 많은 순 순위 (같은 나이는 같은 순위), 팀 최고 나이, 팀 인원. 조건에 걸린 회원 기준
+    @Transactional(readOnly = true)
+    List<MemberRankDto> rankByAgeInTeam(MemberSearchCondition condition);
+
+    //팀마다 나이 많은 순으로 limit 명
+    @Transactional(readOnly = true)
+    List<MemberRankDto> findTopByAgePerTeam(int limit);
 }
\ No newline at end of file
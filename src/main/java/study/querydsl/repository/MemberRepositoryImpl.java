@@ -2,29 +2,58 @@ package study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberRankDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberRankDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.QueryShape;
+import study.querydsl.repository.support.SearchResultCache;
+import study.querydsl.repository.support.WindowFunctions.Window;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.support.WindowFunctions.count;
+import static study.querydsl.repository.support.WindowFunctions.max;
+import static study.querydsl.repository.support.WindowFunctions.over;
+import static study.querydsl.repository.support.WindowFunctions.rank;
 
 
 public class MemberRepositoryImpl  implements MemberRepositoryCustom {
 
-
+    //rankQuery 와 같은 컬럼. 같은 나이면 id 순 (row_number 가 실행마다 같게)
+    private static final String TOP_BY_AGE_PER_TEAM =
+            "select member_id, username, age, team_id, team_name, age_rank, team_max_age, team_size from (" +
+            " select m.member_id, m.username, m.age, t.id as team_id, t.name as team_name," +
+            " row_number() over (partition by t.id order by m.age desc, m.member_id asc) as age_rank," +
+            " max(m.age) over (partition by t.id) as team_max_age," +
+            " count(m.member_id) over (partition by t.id) as team_size" +
+            " from member m left join team t on m.team_id = t.id) ranked" +
+            " where age_rank <= :limit" +
+            " order by team_id, age desc, member_id";
+
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final SearchResultCache searchResultCache;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, SearchResultCache searchResultCache) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchResultCache = searchResultCache;
     }
 
     /*public MemberRepositoryImpl(){
@@ -34,7 +63,7 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
     /*public List<MemberTeamDto> search(MemberSearchCondition condition) {
         return from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
@@ -52,30 +81,33 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
     @Override
     //회원명, 팀명, 나이(ageGoe, ageLoe)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch();
+        return searchResultCache.get("search", condition, null, () -> {
+            JPAQuery<MemberTeamDto> query = QueryDeadline.applyTo(queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id,
+                            member.username,
+                            member.age,
+                            team.id,
+                            team.name)))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe()));
+            return QueryShape.run("MemberRepositoryImpl.search", QueryShape.of(condition, null), query::fetch);
+        });
     }
 
 
 
+    @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition,
                                                 Pageable pageable) {
 
      /*   JPQLQuery<MemberTeamDto> jpaQuery = from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
@@ -90,31 +122,86 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
         query.fetch();*/
 
 
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+        return searchResultCache.get("searchPageSimple", condition, pageable, () -> {
+            JPAQuery<MemberTeamDto> query = QueryDeadline.applyTo(queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id,
+                            member.username,
+                            member.age,
+                            team.id,
+                            team.name)))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe()))
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize());
+            QueryResults<MemberTeamDto> results = QueryShape.run("MemberRepositoryImpl.searchPageSimple",
+                    QueryShape.of(condition, pageable), query::fetchResults);
+            List<MemberTeamDto> content = results.getResults();
+            long total = results.getTotal();
+            return new PageImpl<>(content, pageable, total);
+        });
+    }
+
+
+
+    @Override
+    public List<MemberRankDto> rankByAgeInTeam(MemberSearchCondition condition) {
+        JPAQuery<MemberRankDto> query = QueryDeadline.applyTo(rankQuery(rank(over().partitionBy(team.id).orderBy(member.age.desc()))))
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
-        return new PageImpl<>(content, pageable, total);
+                .orderBy(team.id.asc(), member.age.desc(), member.id.asc());
+        return QueryShape.run("MemberRepositoryImpl.rankByAgeInTeam", QueryShape.of(condition, null), query::fetch);
     }
 
+    //jpql 은 from 절 서브쿼리가 없어서 row_number 를 where 에 못 씀. native sql 로 감싸서 db 에서 limit 개만 받음
+    @Override
+    public List<MemberRankDto> findTopByAgePerTeam(int limit) {
+        Query query = QueryDeadline.applyTo(em.createNativeQuery(TOP_BY_AGE_PER_TEAM).setParameter("limit", limit));
+        return QueryShape.run("MemberRepositoryImpl.findTopByAgePerTeam", "limit", () -> {
+            List<MemberRankDto> result = new ArrayList<>();
+            for (Object row : query.getResultList()) {
+                Object[] columns = (Object[]) row;
+                result.add(new MemberRankDto(
+                        ((Number) columns[0]).longValue(),
+                        (String) columns[1],
+                        ((Number) columns[2]).intValue(),
+                        columns[3] == null ? null : ((Number) columns[3]).longValue(),
+                        (String) columns[4],
+                        ((Number) columns[5]).longValue(),
+                        ((Number) columns[6]).intValue(),
+                        ((Number) columns[7]).longValue()));
+            }
+            return result;
+        });
+    }
 
+    private JPAQuery<MemberRankDto> rankQuery(NumberExpression<Long> ageRank) {
+        Window byTeam = over().partitionBy(team.id);
+        return queryFactory
+                .select(new QMemberRankDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name,
+                        ageRank,
+                        max(member.age, byTeam),
+                        count(member.id, byTeam)))
+                .from(member)
+                .leftJoin(member.team, team);
+    }
 
-    private BooleanExpression usernameEq(String username) {
-        return isEmpty(username) ? null : member.username.eq(username);
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (isEmpty(username)) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
     private BooleanExpression teamNameEq(String teamName) {
         return isEmpty(teamName) ? null : team.name.eq(teamName);
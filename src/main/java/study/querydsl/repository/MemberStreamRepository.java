@@ -0,0 +1,168 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static org.springframework.util.StringUtils.isEmpty;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색을 Flux 로 내보낸다. 조건은 {@link MemberRepositoryImpl#search} 와 같다.
+ *
+ * 구독마다 StatelessSession 하나로 jdbc cursor 를 열고, 구독자가 request 한 만큼만 cursor 에서 읽는다.
+ * 그래서 느린 구독자가 있어도 결과 전체가 메모리에 쌓이지 않는다. (jdbc fetch size 만큼만 드라이버에 있음)
+ * 쿼리 실행에는 first-row-timeout 이 jdbc query timeout 으로 걸려서 타임아웃이 나면 db 에서도 취소된다.
+ * jdbc 는 블로킹이라 전용 스레드에서 읽고, 동시에 열 수 있는 cursor 는 max-open 개. (cursor 하나 = 커넥션 하나)
+ * Spring Data 레파지토리 인터페이스에 Flux 를 반환하는 메소드가 있으면 reactive 레파지토리로 보고 막혀서 따로 둠.
+ */
+@Repository
+public class MemberStreamRepository {
+
+    private final EntityManagerFactory emf;
+    private final Scheduler scheduler;
+    private final Semaphore openCursors;
+    private final int fetchSize;
+    private final Duration firstRowTimeout;
+    private final Duration idleTimeout;
+
+    public MemberStreamRepository(EntityManagerFactory emf,
+                                  @Value("${study.querydsl.stream.max-open:8}") int maxOpen,
+                                  @Value("${study.querydsl.stream.fetch-size:100}") int fetchSize,
+                                  @Value("${study.querydsl.stream.first-row-timeout:60s}") Duration firstRowTimeout,
+                                  @Value("${study.querydsl.stream.idle-timeout:30s}") Duration idleTimeout) {
+        this.emf = emf; //생성자에서 unwrap 하면 background bootstrap 때 EntityManagerFactory 를 기다림
+        //열린 cursor 마다 스레드 하나 (스레드를 나눠 쓰면 한 구독자의 fetch 가 다른 구독자를 기다리게 함)
+        this.scheduler = Schedulers.newBoundedElastic(maxOpen, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "member-stream");
+        this.openCursors = new Semaphore(maxOpen);
+        this.fetchSize = fetchSize;
+        this.firstRowTimeout = firstRowTimeout;
+        this.idleTimeout = idleTimeout;
+    }
+
+    //구독자가 idle-timeout 동안 다음 행을 가져가지 않으면 cursor 를 닫고 TimeoutException
+    //첫 행까지는 쿼리 실행 시간이 들어가서 idle 이 아니라 first-row-timeout 으로 잼
+    public Flux<MemberTeamDto> search(MemberSearchCondition condition) {
+        return Flux.defer(() -> {
+            //커넥션 풀을 다 잡고 기다리지 않게 바로 거절
+            if (!openCursors.tryAcquire()) {
+                return Flux.error(new RejectedExecutionException("member streams are all open"));
+            }
+            return Flux.<MemberTeamDto, MemberCursor>generate(
+                    () -> open(condition),
+                    (cursor, sink) -> {
+                        if (cursor.rows.hasNext()) {
+                            sink.next(cursor.rows.next());
+                        } else {
+                            sink.complete();
+                        }
+                        return cursor;
+                    },
+                    MemberCursor::close)
+                    .subscribeOn(scheduler)
+                    .timeout(Mono.delay(firstRowTimeout), row -> Mono.delay(idleTimeout))
+                    .doFinally(signal -> openCursors.release());
+        });
+    }
+
+    public int availableCursors() {
+        return openCursors.availablePermits();
+    }
+
+    private MemberCursor open(MemberSearchCondition condition) {
+        StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession();
+        try {
+            //autocommit 이면 fetch size 를 무시하고 전부 읽는 드라이버가 있어서 트랜잭션 안에서 읽음
+            Transaction transaction = session.beginTransaction();
+            HibernateQuery<MemberTeamDto> query = new HibernateQueryFactory(session)
+                    .select(new QMemberTeamDto(
+                            member.id,
+                            member.username,
+                            member.age,
+                            team.id,
+                            team.name))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe()))
+                    .setFetchSize(fetchSize);
+            //Flux.timeout 은 구독만 끊고 db 에서 도는 쿼리는 못 멈추므로 first-row-timeout 을 jdbc query timeout 으로도 걺
+            CloseableIterator<MemberTeamDto> rows = QueryDeadline.run(QueryDeadline.after(firstRowTimeout),
+                    () -> QueryDeadline.applyTo(query).iterate());
+            return new MemberCursor(session, transaction, rows);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (isEmpty(username)) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
+    }
+    private BooleanExpression teamNameEq(String teamName) {
+        return isEmpty(teamName) ? null : team.name.eq(teamName);
+    }
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe == null ? null : member.age.goe(ageGoe);
+    }
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe == null ? null : member.age.loe(ageLoe);
+    }
+
+    //구독 하나의 cursor. 끝나거나 취소, 에러가 나면 generate 가 close 를 부름
+    private static final class MemberCursor {
+
+        private final StatelessSession session;
+        private final Transaction transaction;
+        private final CloseableIterator<MemberTeamDto> rows;
+
+        private MemberCursor(StatelessSession session, Transaction transaction, CloseableIterator<MemberTeamDto> rows) {
+            this.session = session;
+            this.transaction = transaction;
+            this.rows = rows;
+        }
+
+        private void close() {
+            try {
+                rows.close();
+                if (transaction.isActive()) {
+                    transaction.rollback(); //읽기만 함
+                }
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
@@ -9,14 +9,17 @@ import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
+import study.querydsl.repository.support.ReadOnlyQueries;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 @Repository
+@ReadOnlyQueries //조회만 하는 레파지토리
 public class MemberTestRepository extends Querydsl4RepositorySupport {
     public MemberTestRepository() {
         super(Member.class);
@@ -37,7 +40,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                                       Pageable pageable) {
         JPAQuery<Member> query = selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()));
@@ -52,7 +55,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         return applyPagination(pageable, contentQuery -> contentQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())));
@@ -63,22 +66,36 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         return applyPagination(pageable, contentQuery -> contentQuery
                         .selectFrom(member)
                         .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
+                        .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                                 teamNameEq(condition.getTeamName()),
                                 ageGoe(condition.getAgeGoe()),
                                 ageLoe(condition.getAgeLoe())),
                 countQuery -> countQuery
                         .selectFrom(member)
                         .leftJoin(member.team, team)
-                        .where(usernameEq(condition.getUsername()),
+                        .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                                 teamNameEq(condition.getTeamName()),
                                 ageGoe(condition.getAgeGoe()),
                                 ageLoe(condition.getAgeLoe()))
         );
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return isEmpty(username) ? null : member.username.eq(username);
+    //searchMember 의 stateless 버전. team 은 fetch join 으로 같이 읽고 회원마다 새 인스턴스로 넘김
+    public void scanMembers(MemberSearchCondition condition, Consumer<Member> action) {
+        scanStateless(queryFactory -> queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())), action);
+    }
+
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (isEmpty(username)) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
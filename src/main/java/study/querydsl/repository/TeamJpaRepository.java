@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.QTeamMemberCountDto;
+import study.querydsl.dto.QTeamWithMembersDto;
+import study.querydsl.dto.TeamMemberCountDto;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static com.querydsl.core.group.GroupBy.groupBy;
+import static com.querydsl.core.group.GroupBy.list;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@Repository
+public class TeamJpaRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamJpaRepository(EntityManager em, JPAQueryFactory jpaQueryFactory) {
+        this.em = em;
+        this.queryFactory = jpaQueryFactory;
+    }
+
+    public void save(Team team) {
+        em.persist(team);
+    }
+
+    public Optional<Team> findById(Long id) {
+        return Optional.ofNullable(em.find(Team.class, id));
+    }
+
+    //update team set member_count = member_count + ? where id = ?
+    //엔티티 값을 읽어서 +1 하지 않고 db 에서 바로 더하기 때문에 동시에 여러 트랜잭션이 들어와도 값이 유실되지 않음
+    public long addMemberCount(Long teamId, int delta) {
+        return queryFactory
+                .update(team)
+                .set(team.memberCount, team.memberCount.add(delta))
+                .where(team.id.eq(teamId))
+                .execute();
+    }
+
+    public long findMemberCount(Long teamId) {
+        Long count = queryFactory
+                .select(team.memberCount)
+                .from(team)
+                .where(team.id.eq(teamId))
+                .fetchOne();
+        return count == null ? 0 : count;
+    }
+
+    //팀 크기 조회. Team.members 를 로딩하거나 count(member) group by 를 하지 않고 캐시 컬럼만 읽음
+    public List<TeamMemberCountDto> findMemberCounts() {
+        return queryFactory
+                .select(new QTeamMemberCountDto(
+                        team.id,
+                        team.name,
+                        team.memberCount))
+                .from(team)
+                .orderBy(team.id.asc())
+                .fetch();
+    }
+
+    //em.persist 로 직접 넣은 데이터, spring data save/delete, member bulk delete 처럼 카운터를 거치지 않은 경우 실제 회원 수로 다시 맞춤
+    public long syncMemberCount() {
+        QMember m = new QMember("m");
+        return queryFactory
+                .update(team)
+                .set(team.memberCount, JPAExpressions
+                        .select(m.count())
+                        .from(m)
+                        .where(m.team.eq(team)))
+                .execute();
+    }
+
+    //팀마다 members 를 lazy 로딩하지 않고 team left join member 한번으로 묶음. 결과 전체를 메모리에 만든다
+    public List<TeamWithMembersDto> findTeamsWithMembers() {
+        return queryFactory
+                .from(team)
+                .leftJoin(team.members, member)
+                .orderBy(team.id.asc(), member.id.asc())
+                .transform(groupBy(team.id).list(new QTeamWithMembersDto(
+                        team.id,
+                        team.name,
+                        list(new QMemberDto(member.username, member.age).skipNulls())))); //회원 없는 팀은 빈 목록
+    }
+
+    //같은 join 을 팀 순서로 스트리밍하면서 팀 id 가 바뀔 때마다 넘김. 한번에 한 팀만 메모리에 있음
+    @Transactional(readOnly = true)
+    public void forEachTeamWithMembers(Consumer<TeamWithMembersDto> action) {
+        try (CloseableIterator<Tuple> rows = queryFactory
+                .select(team.id, team.name, member.id, member.username, member.age)
+                .from(team)
+                .leftJoin(team.members, member)
+                .orderBy(team.id.asc(), member.id.asc())
+                .iterate()) {
+            TeamWithMembersDto current = null;
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                Long teamId = row.get(team.id);
+                if (current == null || !Objects.equals(current.getTeamId(), teamId)) {
+                    if (current != null) {
+                        action.accept(current);
+                    }
+                    current = new TeamWithMembersDto(teamId, row.get(team.name), new ArrayList<>());
+                }
+                if (row.get(member.id) != null) { //left join 에서 회원이 없는 팀의 행은 member_id 가 null
+                    current.getMembers().add(new MemberDto(row.get(member.username), row.get(member.age)));
+                }
+            }
+            if (current != null) {
+                action.accept(current);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Member, Team 데이터 버전
+ *
+ * 하이버네이트가 내보내는 sql 을 보고 member, team 에 insert/update/delete 가 나가면 버전을 올린다.
+ * 엔티티 변경뿐 아니라 querydsl bulk update/delete 도 sql 로 잡힌다.
+ * 커밋 전에 읽어간 버전으로 옛날 데이터가 캐시되지 않도록 트랜잭션이 끝날 때 한번 더 올린다.
+ */
+@Component
+public class DataVersion implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final Pattern MEMBER_TEAM_WRITE = Pattern.compile(
+            "\\b(insert\\s+into|update|delete\\s+from)\\s+(member|team)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final long epoch = System.currentTimeMillis(); //재시작하면 버전이 0부터 다시 시작하므로 구분용
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public String etag() {
+        return "W/\"" + epoch + "-" + version.get() + "\"";
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        StatementInspectors.add(hibernateProperties, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (MEMBER_TEAM_WRITE.matcher(sql).find()) {
+            changed();
+        }
+        return sql;
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DataVersion.this);
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
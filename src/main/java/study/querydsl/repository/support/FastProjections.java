@@ -0,0 +1,293 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+import org.springframework.cglib.reflect.FastClass;
+import org.springframework.cglib.reflect.FastConstructor;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link com.querydsl.core.types.Projections} 대신 쓰는 리플렉션 없는 dto 프로젝션
+ *
+ * Projections.bean / constructor 는 행마다 리플렉션으로 생성자, setter 를 부른다.
+ * 여기서는 클래스(+ 컬럼 구성)마다 한번 접근 코드를 만들어서 캐시하고 행마다 그걸 바로 호출한다.
+ * bean : LambdaMetafactory 로 만든 기본 생성자 Supplier, setter BiConsumer
+ * fields : 기본 생성자는 bean 과 같고, 필드에는 MethodHandles.Lookup.findSetter 로 만든 핸들로 바로 넣음
+ * constructor : cglib FastClass 로 생성한 바이트코드 (인자 배열 그대로 전달)
+ * 둘 다 FactoryExpression 이라 select(...) 에 그대로 넣으면 된다. @QueryProjection 이 없는 dto 에도 쓸 수 있다.
+ */
+public final class FastProjections {
+
+    private static final Map<List<Object>, BeanAccessor<?>> BEAN_ACCESSORS = new ConcurrentHashMap<>();
+    private static final Map<List<Object>, FastConstructor> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private FastProjections() {
+    }
+
+    //Projections.bean 과 같이 path 이름이나 alias 로 setter 를 찾음
+    public static <T> BeanProjection<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+        return beanProjection(type, false, exprs);
+    }
+
+    //Projections.fields 와 같이 path 이름이나 alias 로 필드를 찾음. setter 가 없는 dto 용
+    public static <T> BeanProjection<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+        return beanProjection(type, true, exprs);
+    }
+
+    //Projections.constructor 와 같이 인자 타입으로 생성자를 찾음
+    public static <T> ConstructorProjection<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+        Class<?>[] argTypes = new Class<?>[exprs.length];
+        for (int i = 0; i < exprs.length; i++) {
+            argTypes[i] = exprs[i].getType();
+        }
+        List<Object> key = new ArrayList<>(Arrays.asList(argTypes));
+        key.add(0, type);
+        FastConstructor constructor = CONSTRUCTORS.computeIfAbsent(key, k ->
+                FastClass.create(type).getConstructor(findConstructor(type, argTypes)));
+        return new ConstructorProjection<>(type, constructor, exprs);
+    }
+
+    private static <T> BeanProjection<T> beanProjection(Class<? extends T> type, boolean fieldAccess, Expression<?>... exprs) {
+        List<String> names = new ArrayList<>(exprs.length);
+        for (Expression<?> expr : exprs) {
+            names.add(propertyName(expr));
+        }
+        List<Object> key = new ArrayList<>(names);
+        key.add(0, type);
+        key.add(1, fieldAccess);
+        @SuppressWarnings("unchecked")
+        BeanAccessor<T> accessor = (BeanAccessor<T>) BEAN_ACCESSORS.computeIfAbsent(key,
+                k -> new BeanAccessor<>(type, names, fieldAccess));
+        return new BeanProjection<>(type, accessor, exprs);
+    }
+
+    public static final class BeanProjection<T> extends FactoryExpressionBase<T> {
+
+        private final BeanAccessor<T> accessor;
+        private final List<Expression<?>> args;
+
+        private BeanProjection(Class<? extends T> type, BeanAccessor<T> accessor, Expression<?>... args) {
+            super(type);
+            this.accessor = accessor;
+            this.args = Collections.unmodifiableList(Arrays.asList(args));
+        }
+
+        @Override
+        public T newInstance(Object... values) {
+            return accessor.create(values);
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return args;
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, C context) {
+            return v.visit(this, context);
+        }
+    }
+
+    public static final class ConstructorProjection<T> extends FactoryExpressionBase<T> {
+
+        private final FastConstructor constructor;
+        private final List<Expression<?>> args;
+        private final Object[] primitiveDefaults; //primitive 인자 자리의 기본값, 나머지는 null
+
+        private ConstructorProjection(Class<? extends T> type, FastConstructor constructor, Expression<?>... args) {
+            super(type);
+            this.constructor = constructor;
+            this.args = Collections.unmodifiableList(Arrays.asList(args));
+            Class<?>[] paramTypes = constructor.getParameterTypes();
+            this.primitiveDefaults = new Object[paramTypes.length];
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (paramTypes[i].isPrimitive()) {
+                    primitiveDefaults[i] = Array.get(Array.newInstance(paramTypes[i], 1), 0);
+                }
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Object... values) {
+            try {
+                return (T) constructor.newInstance(withPrimitiveDefaults(values));
+            } catch (InvocationTargetException e) {
+                throw new ExpressionException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        //FastClass 는 null 을 그대로 unboxing 해서 NPE. Projections.constructor 처럼 primitive 자리의 null 은 0(false)
+        private Object[] withPrimitiveDefaults(Object[] values) {
+            Object[] replaced = values;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null && primitiveDefaults[i] != null) {
+                    if (replaced == values) {
+                        replaced = values.clone();
+                    }
+                    replaced[i] = primitiveDefaults[i];
+                }
+            }
+            return replaced;
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return args;
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, C context) {
+            return v.visit(this, context);
+        }
+    }
+
+    private static final class BeanAccessor<T> {
+
+        private final Supplier<T> factory;
+        private final BiConsumer<T, Object>[] setters;
+        private final boolean[] primitive;
+
+        @SuppressWarnings("unchecked")
+        BeanAccessor(Class<? extends T> type, List<String> names, boolean fieldAccess) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+                this.factory = (Supplier<T>) lambda(lookup, Supplier.class, "get",
+                        lookup.findConstructor(type, MethodType.methodType(void.class)),
+                        MethodType.methodType(type));
+                this.setters = new BiConsumer[names.size()];
+                this.primitive = new boolean[names.size()];
+                for (int i = 0; i < names.size(); i++) {
+                    if (fieldAccess) {
+                        Field field = findField(type, names.get(i));
+                        primitive[i] = field.getType().isPrimitive();
+                        setters[i] = fieldSetter(field);
+                        continue;
+                    }
+                    Method setter = findSetter(type, names.get(i));
+                    Class<?> paramType = setter.getParameterTypes()[0];
+                    primitive[i] = paramType.isPrimitive();
+                    setters[i] = (BiConsumer<T, Object>) lambda(lookup, BiConsumer.class, "accept",
+                            lookup.unreflect(setter),
+                            MethodType.methodType(void.class, type, ClassUtils.resolvePrimitiveIfNecessary(paramType)));
+                }
+            } catch (Throwable e) {
+                throw new ExpressionException("cannot build projection for " + type.getName() + " " + names, e);
+            }
+        }
+
+        T create(Object[] values) {
+            T bean = factory.get();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value != null || !primitive[i]) { //Projections.bean 처럼 null 은 primitive 에 넣지 않음
+                    setters[i].accept(bean, value);
+                }
+            }
+            return bean;
+        }
+
+        private static Object lambda(MethodHandles.Lookup lookup, Class<?> functionalInterface, String methodName,
+                                     MethodHandle implementation, MethodType instantiatedType) throws Throwable {
+            CallSite site = LambdaMetafactory.metafactory(lookup, methodName,
+                    MethodType.methodType(functionalInterface),
+                    instantiatedType.erase().changeReturnType(instantiatedType.returnType() == void.class ? void.class : Object.class),
+                    implementation, instantiatedType);
+            return site.getTarget().invoke();
+        }
+
+        //LambdaMetafactory 는 필드 핸들을 받지 않으므로 (Object, Object)void 로 맞춘 핸들을 invokeExact 로 호출
+        private static <T> BiConsumer<T, Object> fieldSetter(Field field) throws IllegalAccessException {
+            MethodHandle handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+                    .unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (bean, value) -> {
+                try {
+                    handle.invokeExact((Object) bean, value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new ExpressionException(e.getMessage(), e);
+                }
+            };
+        }
+
+        //Projections.fields 처럼 상위 클래스의 필드까지 찾음
+        private static Field findField(Class<?> type, String name) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                try {
+                    Field field = current.getDeclaredField(name);
+                    if (Modifier.isFinal(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
+                        break;
+                    }
+                    return field;
+                } catch (NoSuchFieldException e) {
+                    //상위 클래스에서 계속 찾음
+                }
+            }
+            throw new ExpressionException("no field " + name + " on " + type.getName());
+        }
+
+        private static Method findSetter(Class<?> type, String property) {
+            String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == 1) {
+                    return method;
+                }
+            }
+            throw new ExpressionException("no setter " + name + " on " + type.getName());
+        }
+    }
+
+    private static String propertyName(Expression<?> expr) {
+        if (expr instanceof Path) {
+            return ((Path<?>) expr).getMetadata().getName();
+        }
+        if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS) {
+            return ((Path<?>) ((Operation<?>) expr).getArg(1)).getMetadata().getName();
+        }
+        throw new ExpressionException("bean projection needs a path or an alias: " + expr);
+    }
+
+    private static Class<?>[] findConstructor(Class<?> type, Class<?>[] argTypes) {
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Class<?>[] paramTypes = constructor.getParameterTypes();
+            if (paramTypes.length != argTypes.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < paramTypes.length && matches; i++) {
+                matches = ClassUtils.resolvePrimitiveIfNecessary(paramTypes[i]).isAssignableFrom(argTypes[i]);
+            }
+            if (matches) {
+                return paramTypes;
+            }
+        }
+        throw new ExpressionException("no constructor on " + type.getName() + " for " + Arrays.toString(argTypes));
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * 세션마다 하이버네이트가 만드는 리스너 (hibernate.session.events.auto). 지금 스레드가 flush 중인지 표시한다.
+ * 쿼리 전에 자동으로 일어나는 flush (auto flush) 는 partialFlush 로 따로 온다.
+ * flush 밖에서 나간 member, team 쓰기 sql 은 엔티티 이벤트가 없는 bulk 쓰기다. (SearchResultCache, UsernameFilter)
+ */
+public class FlushTracker extends BaseSessionEventListener {
+
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    static boolean inFlush() {
+        return DEPTH.get()[0] > 0;
+    }
+
+    @Override
+    public void flushStart() {
+        DEPTH.get()[0]++;
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        DEPTH.get()[0]--;
+    }
+
+    @Override
+    public void partialFlushStart() {
+        DEPTH.get()[0]++;
+    }
+
+    @Override
+    public void partialFlushEnd(int numberOfEntities, int numberOfCollections) {
+        DEPTH.get()[0]--;
+    }
+}
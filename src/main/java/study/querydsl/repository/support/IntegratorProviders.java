@@ -0,0 +1,34 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IntegratorProvider 도 설정에 하나만 들어가서, 이미 있으면 그 목록 뒤에 붙인다. (StatementInspectors 와 같은 이유)
+ */
+public final class IntegratorProviders {
+
+    private IntegratorProviders() {
+    }
+
+    public static void add(Map<String, Object> hibernateProperties, Integrator integrator) {
+        Object previous = hibernateProperties.get(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER);
+        if (previous != null && !(previous instanceof IntegratorProvider)) {
+            throw new IllegalStateException("cannot chain integrator provider " + previous);
+        }
+        IntegratorProvider first = (IntegratorProvider) previous;
+        hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> {
+            List<Integrator> integrators = new ArrayList<>();
+            if (first != null) {
+                integrators.addAll(first.getIntegrators());
+            }
+            integrators.add(integrator);
+            return integrators;
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.Query;
+import javax.persistence.QueryTimeoutException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * 현재 스레드에서 실행되는 조회 쿼리의 마감 시각
+ *
+ * {@link #run} 으로 감싼 구간에서 {@link #applyTo} 를 거친 쿼리는 남은 시간이 jdbc query timeout 으로 걸린다.
+ * 이미 마감이 지났으면 쿼리를 보내지 않고 바로 {@link QueryTimeoutException} 을 던진다.
+ */
+public final class QueryDeadline {
+
+    //초 단위 하이버네이트 힌트. javax.persistence.query.timeout(ms) 는 하이버네이트가 반올림해서 500ms 미만이 0(무제한)이 됨
+    public static final String TIMEOUT_HINT = QueryHints.HINT_TIMEOUT;
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static QueryDeadline after(Duration budget) {
+        return new QueryDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Optional<QueryDeadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public static <T> T run(QueryDeadline deadline, Supplier<T> work) {
+        QueryDeadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static <T> JPAQuery<T> applyTo(JPAQuery<T> query) {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return query;
+        }
+        return query.setHint(TIMEOUT_HINT, deadline.timeoutSeconds());
+    }
+
+    //native 쿼리용
+    public static Query applyTo(Query query) {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return query;
+        }
+        return query.setHint(TIMEOUT_HINT, deadline.timeoutSeconds());
+    }
+
+    //StatelessSession 쿼리용
+    public static <T> HibernateQuery<T> applyTo(HibernateQuery<T> query) {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return query;
+        }
+        return query.setTimeout(deadline.timeoutSeconds());
+    }
+
+    //하이버네이트 query timeout 은 초 단위라 올림. 마감 직전이어도 최소 1초 (0 은 timeout 없음)
+    private int timeoutSeconds() {
+        long remaining = remainingMillis();
+        if (remaining <= 0) {
+            throw new QueryTimeoutException("query deadline exceeded");
+        }
+        return (int) Math.max(1, (remaining + 999) / 1000);
+    }
+
+    public long remainingMillis() {
+        return Duration.ofNanos(deadlineNanos - System.nanoTime()).toMillis();
+    }
+
+    public boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+}
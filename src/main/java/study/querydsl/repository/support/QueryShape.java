@@ -0,0 +1,75 @@
+package study.querydsl.repository.support;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 지금 실행 중인 querydsl 메서드와 검색 조건의 모양(어떤 조건이 들어왔는지, 값은 제외)
+ *
+ * jdbc 레벨 리스너({@link study.querydsl.monitoring.ExplainCapture})가 느린 sql 이 어느 메서드, 어떤 조건에서 나왔는지 알 수 있게 한다.
+ */
+public final class QueryShape {
+
+    private static final ThreadLocal<QueryShape> CURRENT = new ThreadLocal<>();
+
+    private final String method;
+    private final String shape;
+
+    private QueryShape(String method, String shape) {
+        this.method = method;
+        this.shape = shape;
+    }
+
+    public static QueryShape current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T run(String method, String shape, Supplier<T> query) {
+        QueryShape previous = CURRENT.get();
+        CURRENT.set(new QueryShape(method, shape));
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    //ex) "teamName,ageGoe" , "username|page|sort=age"
+    public static String of(MemberSearchCondition condition, Pageable pageable) {
+        List<String> parts = new ArrayList<>();
+        if (hasText(condition.getUsername())) parts.add(condition.isUsernameIgnoreCase() ? "usernameIgnoreCase" : "username");
+        if (hasText(condition.getTeamName())) parts.add("teamName");
+        if (condition.getAgeGoe() != null) parts.add("ageGoe");
+        if (condition.getAgeLoe() != null) parts.add("ageLoe");
+        String shape = parts.isEmpty() ? "none" : String.join(",", parts);
+        if (pageable != null && pageable.isPaged()) {
+            shape += "|page";
+            if (pageable.getSort().isSorted()) {
+                shape += "|sort=" + pageable.getSort().stream()
+                        .map(Sort.Order::getProperty)
+                        .collect(Collectors.joining(","));
+            }
+        }
+        return shape;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+}
@@ -1,11 +1,19 @@
 package study.querydsl.repository.support;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
@@ -19,6 +27,7 @@ import org.springframework.util.Assert;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 
@@ -33,25 +42,24 @@ import java.util.function.Function;
 @Repository
 public abstract class Querydsl4RepositorySupport {
     private final Class domainClass;
-    private Querydsl querydsl;
+    private final boolean readOnlyQueries;
+    private volatile Querydsl querydsl; //첫 사용 시점에 만듦
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private int statelessFetchSize = 1000;
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
+        this.readOnlyQueries = AnnotatedElementUtils.hasAnnotation(getClass(), ReadOnlyQueries.class);
     }
 
+    //엔티티 정보 조회(메타모델 접근)는 기동 시점이 아니라 첫 쿼리 때 한다.
+    //EntityManagerFactory 를 백그라운드로 띄우는 경우 여기서 기다리지 않도록
     @Autowired
     public void setEntityManager(EntityManager entityManager) {
         Assert.notNull(entityManager, "EntityManager must not be null!");
-        JpaEntityInformation entityInformation =
-                JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
-        SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
-        EntityPath path = resolver.createPath(entityInformation.getJavaType());
         this.entityManager = entityManager;
-        this.querydsl = new Querydsl(entityManager, new
-                PathBuilder<>(path.getType(), path.getMetadata()));
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
@@ -59,7 +67,6 @@ public abstract class Querydsl4RepositorySupport {
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
-        Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
     }
 
@@ -70,6 +77,14 @@ public abstract class Querydsl4RepositorySupport {
 
 
     protected Querydsl getQuerydsl() {
+        if (querydsl == null) {
+            JpaEntityInformation entityInformation =
+                    JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
+            SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
+            EntityPath path = resolver.createPath(entityInformation.getJavaType());
+            this.querydsl = new Querydsl(entityManager, new
+                    PathBuilder<>(path.getType(), path.getMetadata()));
+        }
         return querydsl;
     }
 
@@ -78,16 +93,66 @@ public abstract class Querydsl4RepositorySupport {
     }
 
     protected<T> JPAQuery<T> select(Expression<T> expr) {
-        return getQueryFactory().select(expr);
+        return prepare(getQueryFactory().select(expr));
     }
 
     protected<T> JPAQuery<T> selectFrom(EntityPath<T> from) {
-        return getQueryFactory().selectFrom(from);
+        return prepare(getQueryFactory().selectFrom(from));
+    }
+
+    //@ReadOnlyQueries 가 없는 레파지토리에서 호출 단위로 읽기 전용 적용
+    protected<T> JPAQuery<T> selectReadOnly(Expression<T> expr) {
+        return ReadOnlyQuerySupport.readOnly(prepare(getQueryFactory().select(expr)));
+    }
+
+    protected<T> JPAQuery<T> selectFromReadOnly(EntityPath<T> from) {
+        return ReadOnlyQuerySupport.readOnly(prepare(getQueryFactory().selectFrom(from)));
+    }
+
+    private<T> JPAQuery<T> prepare(JPAQuery<T> query) {
+        QueryDeadline.applyTo(query);
+        return readOnlyQueries ? ReadOnlyQuerySupport.readOnly(query) : query;
+    }
+
+    /**
+     * StatelessSession 으로 조회. 1차 캐시, dirty checking, lazy 로딩이 없고 결과 엔티티는 처음부터 준영속이다.
+     * 지금 트랜잭션의 커넥션을 같이 쓴다. 연관 엔티티가 필요하면 fetch join 하거나 dto 로 읽는다.
+     * StatelessSession 은 EntityManager 의 flush 안 된 변경을 모르므로, auto flush 처럼 먼저 flush 한다 (flush 모드가 MANUAL 이면 안 함).
+     */
+    protected<R> R stateless(Function<HibernateQueryFactory, R> work) {
+        Session session = getEntityManager().unwrap(Session.class);
+        if (session.getHibernateFlushMode() != FlushMode.MANUAL && session.isDirty()) {
+            session.flush();
+        }
+        SessionFactory sessionFactory = session.getSessionFactory();
+        return session.doReturningWork(connection -> {
+            try (StatelessSession statelessSession = sessionFactory.openStatelessSession(connection)) {
+                return work.apply(new HibernateQueryFactory(statelessSession));
+            }
+        });
+    }
+
+    //대량 조회를 행 단위로 흘려보냄. 아무것도 쌓지 않으므로 건수와 상관없이 메모리가 일정하다
+    protected<T> void scanStateless(Function<HibernateQueryFactory, HibernateQuery<T>> query, Consumer<? super T> action) {
+        stateless(factory -> {
+            HibernateQuery<T> hibernateQuery = QueryDeadline.applyTo(query.apply(factory))
+                    .setFetchSize(statelessFetchSize);
+            try (CloseableIterator<T> rows = hibernateQuery.iterate()) {
+                while (rows.hasNext()) {
+                    action.accept(rows.next());
+                }
+            }
+            return null;
+        });
+    }
+
+    protected void setStatelessFetchSize(int statelessFetchSize) {
+        this.statelessFetchSize = statelessFetchSize;
     }
 
     protected<T> Page<T> applyPagination(Pageable pageable,
                                    Function<JPAQueryFactory, JPAQuery> contentQuery) {
-        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery jpaQuery = prepare(contentQuery.apply(getQueryFactory()));
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaQuery).fetch();
         return PageableExecutionUtils.getPage(content, pageable,
@@ -96,10 +161,10 @@ public abstract class Querydsl4RepositorySupport {
 
     protected<T> Page<T> applyPagination(Pageable pageable,
                                    Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery) {
-        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery jpaContentQuery = prepare(contentQuery.apply(getQueryFactory()));
         List content = getQuerydsl().applyPagination(pageable,
                 jpaContentQuery).fetch();
-        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        JPAQuery countResult = prepare(countQuery.apply(getQueryFactory()));
         return PageableExecutionUtils.getPage(content, pageable,
                 countResult::fetchCount);
     }
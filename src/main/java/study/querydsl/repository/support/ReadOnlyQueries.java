@@ -0,0 +1,18 @@
+package study.querydsl.repository.support;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.*;
+
+/**
+ * 조회만 하는 레파지토리에 붙인다.
+ *
+ * 모든 메서드가 읽기 전용 트랜잭션으로 실행되고,
+ * {@link Querydsl4RepositorySupport} 가 만드는 쿼리에는 {@link ReadOnlyQuerySupport} 설정이 적용된다.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReadOnlyQueries {
+}
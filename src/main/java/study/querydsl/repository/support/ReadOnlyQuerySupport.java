@@ -0,0 +1,29 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+
+/**
+ * 조회 전용 쿼리 설정
+ *
+ * 읽기 전용 힌트를 주면 하이버네이트가 결과 엔티티의 dirty checking 용 스냅샷을 만들지 않고,
+ * flush 모드를 COMMIT 으로 두면 쿼리 실행 전에 flush 하지 않는다.
+ * 조회한 엔티티를 수정하지 않고, 아직 flush 안된 변경이 결과에 반영될 필요가 없을 때만 사용한다.
+ */
+public abstract class ReadOnlyQuerySupport {
+
+    public static <T> JPAQuery<T> readOnly(JPAQuery<T> query) {
+        return query
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setFlushMode(FlushModeType.COMMIT);
+    }
+
+    public static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setFlushMode(FlushModeType.COMMIT);
+    }
+}
@@ -0,0 +1,464 @@
+package study.querydsl.repository.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.StatelessSession;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.util.StringUtils.isEmpty;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색 결과 캐시 (MemberRepositoryImpl.search, searchPageSimple)
+ *
+ * key 는 정규화한 검색 조건 + 페이지. 크기 제한(W-TinyLFU)과 TTL 이 있다.
+ * Member, Team 의 insert/update/delete 이벤트가 오면 그 회원의 변경 전/후 값에 걸리는 조건의 결과만 지운다.
+ * bulk update/delete 나 native sql 처럼 엔티티 이벤트 없이 나간 쓰기는 어떤 행이 바뀌었는지 몰라서 전부 지운다.
+ * 다른 트랜잭션은 커밋 전까지 옛날 값을 보므로 지우는 건 트랜잭션이 끝날 때 모아서 한번에 한다.
+ * 그 사이 옛날 값을 읽던 조회는 끝날 때 generation 이 바뀐 걸 보고 결과를 넣지 않는다.
+ * generation 확인과 put 은 읽기 락, generation 올림과 지우기는 쓰기 락 안에서 해서 그 사이에 지우기가 끼지 않는다.
+ * 쓰기 트랜잭션 안의 검색은 자기 변경분이 보여야 하므로 캐시를 쓰지 않는다.
+ */
+@Slf4j
+@Component
+public class SearchResultCache implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final Pattern MEMBER_TEAM_WRITE = Pattern.compile(
+            "\\b(insert\\s+into|update|delete\\s+from)\\s+(member|team)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NAME_COLUMN = Pattern.compile("\\bname\\b", Pattern.CASE_INSENSITIVE);
+    private static final BiPredicate<SearchKey, Object> ALL = (key, result) -> true;
+    private static final int MAX_PRECISE = 1000; //한 트랜잭션에서 이보다 많이 바뀌면 하나씩 보지 않고 전부 지움
+
+    private final boolean enabled;
+    private final Cache<SearchKey, Object> cache;
+    private final AtomicLong generation = new AtomicLong(); //지울 때마다 올림. 조회 중에 바뀌면 결과를 넣지 않음
+    //generation 확인 + put 과 generation 올림 + 지우기가 서로 끼어들지 않게. put 끼리는 같이 들어감
+    private final ReadWriteLock evictLock = new ReentrantReadWriteLock();
+    private final Counter memberInvalidations;
+    private final Counter teamInvalidations;
+    private final Counter bulkInvalidations;
+
+    public SearchResultCache(MeterRegistry meterRegistry,
+                             @Value("${study.querydsl.search.cache.enabled:true}") boolean enabled,
+                             @Value("${study.querydsl.search.cache.max-size:10000}") long maxSize,
+                             @Value("${study.querydsl.search.cache.ttl:30s}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        //cache.gets{result=hit|miss}, cache.evictions, cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "member.search");
+        Gauge.builder("member.search.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+        this.memberInvalidations = meterRegistry.counter("member.search.cache.invalidations", "cause", "member");
+        this.teamInvalidations = meterRegistry.counter("member.search.cache.invalidations", "cause", "team");
+        this.bulkInvalidations = meterRegistry.counter("member.search.cache.invalidations", "cause", "bulk");
+    }
+
+    //api 는 같은 조건이라도 결과 모양이 다른 메소드를 구분 (search, searchPageSimple)
+    @SuppressWarnings("unchecked")
+    public <T> T get(String api, MemberSearchCondition condition, Pageable pageable, Supplier<T> search) {
+        if (!enabled || !cacheable()) {
+            return search.get();
+        }
+        SearchKey key = new SearchKey(api, condition, pageable);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        long before = generation.get();
+        T result = search.get();
+        if (result != null) {
+            evictLock.readLock().lock();
+            try {
+                if (generation.get() == before) {
+                    cache.put(key, result);
+                }
+            } finally {
+                evictLock.readLock().unlock();
+            }
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        Pending pending = pending();
+        pending.add(ALL, bulkInvalidations);
+        evictIfNoTransaction(pending);
+    }
+
+    //트랜잭션이 없거나 읽기 전용일 때만. 쓰기 트랜잭션은 flush 안 된 변경이 있을 수 있음
+    private static boolean cacheable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        StatementInspectors.add(hibernateProperties, this);
+        hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, FlushTracker.class.getName());
+        IntegratorProviders.add(hibernateProperties, new Invalidator());
+    }
+
+    //flush 중에 나가는 member, team 쓰기는 엔티티 이벤트로 따로 오므로 여기서는 그 밖의 쓰기만 봄
+    @Override
+    public String inspect(String sql) {
+        if (enabled && !FlushTracker.inFlush()) {
+            Matcher matcher = MEMBER_TEAM_WRITE.matcher(sql);
+            if (matcher.find() && !memberCountOnly(matcher, sql)) {
+                invalidateAll();
+            }
+        }
+        return sql;
+    }
+
+    //update team set member_count = ... 는 검색 결과에 없는 컬럼이라 무시 (TeamJpaRepository.addMemberCount)
+    private static boolean memberCountOnly(Matcher matcher, String sql) {
+        return matcher.group(1).equalsIgnoreCase("update")
+                && matcher.group(2).equalsIgnoreCase("team")
+                && !NAME_COLUMN.matcher(sql).find();
+    }
+
+    private void memberChanged(SharedSessionContractImplementor session, MemberState before, MemberState after) {
+        Pending pending = pending();
+        for (MemberState state : new MemberState[]{before, after}) {
+            if (state != null && !state.teamNameKnown && !pending.all) {
+                resolveTeamName(session, state, pending);
+            }
+        }
+        pending.add((key, result) -> (before != null && key.matches(before))
+                || (after != null && key.matches(after)), memberInvalidations);
+        evictIfNoTransaction(pending);
+    }
+
+    //팀 이름이 조건에 걸렸거나 결과에 그 팀 회원이 있는 경우
+    private void teamChanged(Long teamId, String oldName, String newName) {
+        Pending pending = pending();
+        pending.add((key, result) -> (key.teamName != null
+                && (key.teamName.equals(oldName) || key.teamName.equals(newName)))
+                || containsTeam(result, teamId), teamInvalidations);
+        evictIfNoTransaction(pending);
+    }
+
+    //트랜잭션에서 바뀐 것들. 끝날 때 (커밋, 롤백 모두) 한번에 지움. 트랜잭션 밖이면 바로 지움
+    private Pending pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Pending();
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        Pending created = new Pending();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(SearchResultCache.this);
+                evict(created);
+            }
+        });
+        return created;
+    }
+
+    private void evictIfNoTransaction(Pending pending) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(pending);
+        }
+    }
+
+    private void evict(Pending pending) {
+        evictLock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            if (pending.all) {
+                cache.invalidateAll();
+                return;
+            }
+            cache.asMap().entrySet().removeIf(entry ->
+                    pending.stales.stream().anyMatch(stale -> stale.test(entry.getKey(), entry.getValue())));
+        } finally {
+            evictLock.writeLock().unlock();
+        }
+    }
+
+    //로딩 안 된 팀 프록시는 초기화하지 않고 이름만 읽음 (트랜잭션마다 팀당 한번)
+    //flush 중이라 같은 세션으로는 쿼리하지 않고, 풀에서 커넥션을 더 받지 않도록 지금 트랜잭션의 커넥션을 빌린 StatelessSession 으로 읽음
+    //캐시가 비었거나 못 읽으면 걸린다고 봄
+    private void resolveTeamName(SharedSessionContractImplementor session, MemberState state, Pending pending) {
+        if (pending.teamNames.containsKey(state.teamId)) {
+            state.resolve(pending.teamNames.get(state.teamId));
+            return;
+        }
+        if (cache.estimatedSize() == 0) {
+            return;
+        }
+        Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        try (StatelessSession lookup = session.getFactory().withStatelessOptions()
+                .connection(connection)
+                .openStatelessSession()) {
+            String name = new HibernateQueryFactory(lookup)
+                    .select(team.name)
+                    .from(team)
+                    .where(team.id.eq(state.teamId))
+                    .fetchOne();
+            pending.teamNames.put(state.teamId, name);
+            state.resolve(name);
+        } catch (RuntimeException e) {
+            log.warn("team name lookup failed, treating team {} as matching", state.teamId, e);
+        }
+    }
+
+    private static boolean containsTeam(Object result, Long teamId) {
+        Collection<?> rows = result instanceof Page ? ((Page<?>) result).getContent() : (Collection<?>) result;
+        for (Object row : rows) {
+            if (row instanceof MemberTeamDto && Objects.equals(((MemberTeamDto) row).getTeamId(), teamId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //검색 조건. MemberRepositoryImpl 의 where 절과 같은 규칙으로 회원 하나가 걸리는지 본다
+    static final class SearchKey {
+
+        private final String api;
+        private final String username; //ignoreCase 면 소문자로
+        private final boolean ignoreCase;
+        private final String teamName;
+        private final Integer ageGoe;
+        private final Integer ageLoe;
+        private final Pageable pageable;
+
+        SearchKey(String api, MemberSearchCondition condition, Pageable pageable) {
+            this.api = api;
+            this.ignoreCase = condition.isUsernameIgnoreCase();
+            String username = isEmpty(condition.getUsername()) ? null : condition.getUsername();
+            this.username = ignoreCase ? Member.normalizeUsername(username) : username;
+            this.teamName = isEmpty(condition.getTeamName()) ? null : condition.getTeamName();
+            this.ageGoe = condition.getAgeGoe();
+            this.ageLoe = condition.getAgeLoe();
+            this.pageable = pageable;
+        }
+
+        boolean matches(MemberState member) {
+            if (username != null && !username.equals(ignoreCase
+                    ? Member.normalizeUsername(member.username) : member.username)) {
+                return false;
+            }
+            if (teamName != null && !member.mayBeInTeam(teamName)) {
+                return false;
+            }
+            if (ageGoe != null && (member.age == null || member.age < ageGoe)) {
+                return false;
+            }
+            return ageLoe == null || (member.age != null && member.age <= ageLoe);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SearchKey)) {
+                return false;
+            }
+            SearchKey that = (SearchKey) o;
+            return ignoreCase == that.ignoreCase
+                    && api.equals(that.api)
+                    && Objects.equals(username, that.username)
+                    && Objects.equals(teamName, that.teamName)
+                    && Objects.equals(ageGoe, that.ageGoe)
+                    && Objects.equals(ageLoe, that.ageLoe)
+                    && Objects.equals(pageable, that.pageable);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(api, username, ignoreCase, teamName, ageGoe, ageLoe, pageable);
+        }
+    }
+
+    //이벤트의 state 배열에서 검색 조건에 쓰는 값만 꺼냄
+    static final class MemberState {
+
+        private final String username;
+        private final Integer age;
+        private final Long teamId;
+        private String teamName;
+        private boolean teamNameKnown;
+
+        private MemberState(String username, Integer age, Long teamId, String teamName, boolean teamNameKnown) {
+            this.username = username;
+            this.age = age;
+            this.teamId = teamId;
+            this.teamName = teamName;
+            this.teamNameKnown = teamNameKnown;
+        }
+
+        static MemberState of(EntityPersister persister, Object[] state) {
+            String username = (String) state[persister.getEntityMetamodel().getPropertyIndex("username")];
+            Integer age = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+            Team memberTeam = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+            if (memberTeam == null) {
+                return new MemberState(username, age, null, null, true);
+            }
+            if (memberTeam instanceof HibernateProxy && !Hibernate.isInitialized(memberTeam)) {
+                Long teamId = (Long) ((HibernateProxy) memberTeam).getHibernateLazyInitializer().getIdentifier();
+                return new MemberState(username, age, teamId, null, false);
+            }
+            return new MemberState(username, age, memberTeam.getId(), memberTeam.getName(), true);
+        }
+
+        void resolve(String teamName) {
+            this.teamName = teamName;
+            this.teamNameKnown = true;
+        }
+
+        boolean mayBeInTeam(String name) {
+            return !teamNameKnown || name.equals(teamName);
+        }
+    }
+
+    //트랜잭션 하나에서 지울 것들
+    private static final class Pending {
+
+        private final List<BiPredicate<SearchKey, Object>> stales = new ArrayList<>();
+        private final Map<Long, String> teamNames = new HashMap<>(); //이미 읽은 팀 이름 (없는 팀이면 null)
+        private boolean all;
+
+        void add(BiPredicate<SearchKey, Object> stale, Counter cause) {
+            cause.increment();
+            if (all) {
+                return;
+            }
+            if (stale == ALL || stales.size() >= MAX_PRECISE) {
+                all = true;
+                stales.clear();
+                return;
+            }
+            stales.add(stale);
+        }
+    }
+
+    private final class Invalidator implements Integrator,
+            PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+            EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.POST_INSERT, this);
+            listeners.appendListeners(EventType.POST_UPDATE, this);
+            listeners.appendListeners(EventType.POST_DELETE, this);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+
+        //팀은 새로 생기면 회원이 없어서 검색 결과가 안 바뀜
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (enabled && event.getEntity() instanceof Member) {
+                memberChanged(event.getSession(), null, MemberState.of(event.getPersister(), event.getState()));
+            }
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (!enabled) {
+                return;
+            }
+            boolean member = event.getEntity() instanceof Member;
+            if (!member && !(event.getEntity() instanceof Team)) {
+                return;
+            }
+            if (event.getOldState() == null) { //merge 처럼 변경 전 값이 없으면 어디에 걸렸었는지 모름
+                Pending pending = pending();
+                pending.add(ALL, member ? memberInvalidations : teamInvalidations);
+                evictIfNoTransaction(pending);
+            } else if (member) {
+                memberChanged(event.getSession(), MemberState.of(event.getPersister(), event.getOldState()),
+                        MemberState.of(event.getPersister(), event.getState()));
+            } else {
+                int name = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+                String oldName = (String) event.getOldState()[name];
+                String newName = (String) event.getState()[name];
+                if (!Objects.equals(oldName, newName)) {
+                    teamChanged((Long) event.getId(), oldName, newName);
+                }
+            }
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            if (!enabled) {
+                return;
+            }
+            if (event.getEntity() instanceof Member) {
+                memberChanged(event.getSession(), MemberState.of(event.getPersister(), event.getDeletedState()), null);
+            } else if (event.getEntity() instanceof Team) {
+                int name = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+                teamChanged((Long) event.getId(), (String) event.getDeletedState()[name], null);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return false;
+        }
+    }
+}
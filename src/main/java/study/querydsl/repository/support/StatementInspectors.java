@@ -0,0 +1,30 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Map;
+
+/**
+ * 하이버네이트는 StatementInspector 를 하나만 받아서, 이미 등록된 게 있으면 뒤에 이어 붙인다.
+ * customizer 실행 순서와 상관없이 DataVersion, SearchResultCache, UsernameFilter 가 같이 sql 을 본다.
+ */
+public final class StatementInspectors {
+
+    private StatementInspectors() {
+    }
+
+    public static void add(Map<String, Object> hibernateProperties, StatementInspector inspector) {
+        Object previous = hibernateProperties.get(AvailableSettings.STATEMENT_INSPECTOR);
+        if (previous == null) {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+            return;
+        }
+        if (!(previous instanceof StatementInspector)) {
+            throw new IllegalStateException("cannot chain statement inspector " + previous);
+        }
+        StatementInspector first = (StatementInspector) previous;
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                (StatementInspector) sql -> inspector.inspect(first.inspect(sql)));
+    }
+}
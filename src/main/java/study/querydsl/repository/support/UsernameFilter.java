@@ -0,0 +1,465 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * username 블룸 필터. 없는 이름으로 조회하면 ({@link UsernameLookup}) db 에 가지 않고 빈 결과를 준다.
+ *
+ * 크기는 다시 만들 때의 회원 수로 정한다. (목표 오탐률, 여유 50%)
+ * 엔티티 insert 와 username 변경은 바로 넣는다. 블룸 필터는 지울 수 없어서 삭제, 이름 변경으로 없어진 이름은
+ * 다음에 다시 만들 때까지 오탐으로 남는다. 주기적으로 (rebuild-interval), 그리고 넣은 수가 크기를 넘으면 다시 만든다.
+ * bulk update 나 native sql 로 회원을 넣거나 바꾸면 어떤 이름이 생겼는지 몰라서 다시 만들 때까지 필터를 쓰지 않는다.
+ * JdbcTemplate 처럼 하이버네이트를 거치지 않는 쓰기는 보이지 않으므로 쓴 쪽에서 {@link #rebuild()} 를 불러야 한다.
+ * 쓰기 트랜잭션 안의 조회는 flush 전의 자기 변경분도 보여야 하므로 필터를 쓰지 않는다. (SearchResultCache 와 같은 규칙)
+ * 샤드(ShardConfig)가 있으면 다시 만들 때 모든 샤드의 회원 이름도 읽는다.
+ */
+@Slf4j
+@Component
+public class UsernameFilter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final Pattern MEMBER_WRITE = Pattern.compile(
+            "\\b(insert\\s+into|update)\\s+member\\b", Pattern.CASE_INSENSITIVE);
+    private static final int MIN_EXPECTED = 1024;
+    private static final int FETCH_SIZE = 1000;
+
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final Duration rebuildInterval;
+    private final ScheduledExecutorService rebuilder;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicLong bulkWrites = new AtomicLong(); //다시 만드는 중에 bulk 쓰기가 있었으면 그 결과도 못 믿음
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>(); //커밋 전에 넣은 이름. 다시 만든 필터에도 넣음
+    private final Counter skipped;
+    private final Counter found;
+    private final Counter falsePositives;
+    private volatile Bloom current = Bloom.sized(0, 0.01);
+    private volatile Bloom building;
+    private volatile boolean usable; //처음 만들기 전, bulk 쓰기 뒤에는 false
+    //다시 만들 때 읽을 곳. 메인 EntityManagerFactory 와 샤드 (ShardConfig) 가 integrate 될 때 들어옴
+    private final List<SessionFactory> sessionFactories = new CopyOnWriteArrayList<>();
+
+    public UsernameFilter(MeterRegistry meterRegistry,
+                          @Value("${study.querydsl.username-filter.enabled:true}") boolean enabled,
+                          @Value("${study.querydsl.username-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                          @Value("${study.querydsl.username-filter.rebuild-interval:10m}") Duration rebuildInterval) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("false-positive-rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "username-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.skipped = meterRegistry.counter("member.username.filter.lookups", "result", "skipped");
+        this.found = meterRegistry.counter("member.username.filter.lookups", "result", "found");
+        this.falsePositives = meterRegistry.counter("member.username.filter.lookups", "result", "false_positive");
+        //실제 오탐률: 없는 이름 중 필터를 통과해 db 까지 간 비율
+        Gauge.builder("member.username.filter.false.positive.rate", this, UsernameFilter::observedFalsePositiveRate)
+                .register(meterRegistry);
+        //지금 들어 있는 이름 수로 계산한 오탐률
+        Gauge.builder("member.username.filter.expected.false.positive.rate", this,
+                        filter -> filter.current.expectedFalsePositiveRate())
+                .register(meterRegistry);
+        Gauge.builder("member.username.filter.entries", this, filter -> filter.current.entries())
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        rebuildLater();
+        long interval = rebuildInterval.toMillis();
+        rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * ABSENT 면 이 이름의 회원이 확실히 없다. MIGHT_EXIST 면 조회하고 결과를 {@link #recordLookup} 으로 알려준다.
+     */
+    public Check check(String username) {
+        if (!enabled || !usable || username == null || !usableInTransaction()) {
+            return Check.NOT_USED;
+        }
+        if (current.mightContain(username)) {
+            return Check.MIGHT_EXIST;
+        }
+        skipped.increment();
+        return Check.ABSENT;
+    }
+
+    //필터를 통과해 조회한 결과. 비어 있으면 오탐
+    public void recordLookup(boolean present) {
+        (present ? found : falsePositives).increment();
+    }
+
+    public boolean mightContain(String username) {
+        return current.mightContain(username);
+    }
+
+    public boolean isUsable() {
+        return enabled && usable;
+    }
+
+    public double observedFalsePositiveRate() {
+        double negatives = falsePositives.count() + skipped.count();
+        return negatives == 0 ? 0 : falsePositives.count() / negatives;
+    }
+
+    public double expectedFalsePositiveRate() {
+        return current.expectedFalsePositiveRate();
+    }
+
+    /**
+     * 회원 username 을 커서로 읽어 새 필터를 만들고 바꿔 끼운다. 만드는 동안 들어온 이름은 새 필터에도 넣는다.
+     * 동시에 둘이 만들면 building 을 서로 덮어써서 한번에 하나만.
+     */
+    public synchronized void rebuild() {
+        List<SessionFactory> factories = new ArrayList<>(sessionFactories);
+        if (!enabled || factories.isEmpty()) {
+            return;
+        }
+        long bulkBefore = bulkWrites.get();
+        long count = 0;
+        for (SessionFactory factory : factories) {
+            Long factoryCount = read(factory, queryFactory -> queryFactory.select(member.count()).from(member).fetchOne());
+            count += factoryCount == null ? 0 : factoryCount;
+        }
+        Bloom next = Bloom.sized(count, falsePositiveRate);
+        try {
+            building = next;
+            for (SessionFactory factory : factories) {
+                read(factory, queryFactory -> {
+                    try (CloseableIterator<String> names = queryFactory
+                            .select(member.username)
+                            .from(member)
+                            .setFetchSize(FETCH_SIZE)
+                            .iterate()) {
+                        while (names.hasNext()) {
+                            next.put(names.next());
+                        }
+                    }
+                    return null;
+                });
+            }
+            inFlight.keySet().forEach(next::put);
+            current = next; //building 을 비우기 전에 바꿔야 add 가 둘 중 하나에는 넣음
+        } finally {
+            building = null;
+        }
+        usable = bulkWrites.get() == bulkBefore;
+        log.debug("username filter rebuilt: entries={}, bits={}, usable={}", next.entries(), next.bits, usable);
+    }
+
+    private static <T> T read(SessionFactory factory, Function<HibernateQueryFactory, T> work) {
+        try (StatelessSession session = factory.openStatelessSession()) {
+            Transaction tx = session.beginTransaction();
+            try {
+                return work.apply(new HibernateQueryFactory(session));
+            } finally {
+                tx.rollback(); //읽기만 함
+            }
+        }
+    }
+
+    private void rebuildQuietly() {
+        rebuildScheduled.set(false);
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("username filter rebuild failed", e);
+        }
+    }
+
+    //이미 예약돼 있으면 한번만
+    private void rebuildLater() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            try {
+                rebuilder.execute(this::rebuildQuietly);
+            } catch (RuntimeException e) { //종료 중
+                rebuildScheduled.set(false);
+            }
+        }
+    }
+
+    private static boolean usableInTransaction() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        StatementInspectors.add(hibernateProperties, this);
+        hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, FlushTracker.class.getName());
+        IntegratorProviders.add(hibernateProperties, new Maintainer());
+    }
+
+    //flush 밖에서 나간 회원 insert/update. delete 는 오탐만 늘려서 무시
+    //커밋 전에 다시 만든 필터는 그 행을 못 봤으므로 트랜잭션이 끝날 때 한번 더 막고 다시 만든다
+    @Override
+    public String inspect(String sql) {
+        if (enabled && !FlushTracker.inFlush() && MEMBER_WRITE.matcher(sql).find()) {
+            bulkWritten();
+            afterCompletion(() -> {
+                bulkWritten();
+                rebuildLater();
+            });
+        }
+        return sql;
+    }
+
+    private void bulkWritten() {
+        bulkWrites.incrementAndGet();
+        usable = false;
+    }
+
+    //이벤트 시점에 넣고, 커밋 뒤에 한번 더 넣는다. 그 사이 다시 만든 필터가 커밋 전 데이터를 못 봤을 수 있음
+    private void added(String username) {
+        if (username == null) {
+            return;
+        }
+        add(username);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        inFlight.merge(username, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    add(username);
+                }
+                inFlight.computeIfPresent(username, (name, count) -> count == 1 ? null : count - 1);
+            }
+        });
+    }
+
+    //building 을 먼저 읽음. 비어 있으면 이미 current 가 새 필터로 바뀌었거나 아직 만들기 전
+    private void add(String username) {
+        Bloom rebuilding = building;
+        Bloom filter = current;
+        filter.put(username);
+        if (rebuilding != null) {
+            rebuilding.put(username);
+        }
+        if (filter.entries() > filter.expected) {
+            rebuildLater();
+        }
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    public enum Check {
+        ABSENT, MIGHT_EXIST, NOT_USED
+    }
+
+    /**
+     * bit 배열은 AtomicLongArray 라 넣는 쪽과 보는 쪽이 락 없이 같이 쓴다.
+     * hash 하나(64bit)를 둘로 나눠 k 개 위치를 만든다. (h1 + i * h2)
+     */
+    static final class Bloom {
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+        private final long expected;
+        private final AtomicLong entries = new AtomicLong();
+
+        private Bloom(long expected, long bits, int hashes) {
+            this.expected = expected;
+            this.bits = bits;
+            this.hashes = hashes;
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+        }
+
+        //m = -n ln p / (ln 2)^2, k = m / n ln 2
+        static Bloom sized(long count, double falsePositiveRate) {
+            long expected = Math.max(MIN_EXPECTED, count + count / 2);
+            long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            if ((bits + 63) / 64 > Integer.MAX_VALUE) {
+                throw new IllegalStateException("username filter too large: " + bits + " bits");
+            }
+            int hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+            return new Bloom(expected, bits, hashes);
+        }
+
+        //새로 켠 비트가 있을 때만 셈. 이벤트 때와 커밋 뒤에 같은 이름을 두번 넣어도 한번만 셈
+        void put(String username) {
+            long hash = hash(username);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = index(h1, h2, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0) {
+                    if (words.compareAndSet(word, value, value | mask)) {
+                        changed = true;
+                        break;
+                    }
+                    value = words.get(word);
+                }
+            }
+            if (changed) {
+                entries.incrementAndGet();
+            }
+        }
+
+        boolean mightContain(String username) {
+            long hash = hash(username);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                long bit = index(h1, h2, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //넣은 서로 다른 이름 수. 이미 있다고 나오는 이름(오탐 포함)은 안 세서 실제보다 조금 적을 수 있음
+        long entries() {
+            return entries.get();
+        }
+
+        //(1 - e^(-kn/m))^k
+        double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashes * entries.get() / bits), hashes);
+        }
+
+        private long index(int h1, int h2, int i) {
+            long combined = (long) h1 + (long) i * h2;
+            return (combined & Long.MAX_VALUE) % bits;
+        }
+
+        //FNV-1a 64 + murmur3 fmix
+        private static long hash(String username) {
+            long h = 0xCBF29CE484222325L;
+            for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    private final class Maintainer implements Integrator, PostInsertEventListener, PostUpdateEventListener {
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+            sessionFactories.add(sessionFactory);
+            EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.POST_INSERT, this);
+            listeners.appendListeners(EventType.POST_UPDATE, this);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            sessionFactories.remove(sessionFactory);
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (enabled && event.getEntity() instanceof Member) {
+                added(username(event.getPersister(), event.getState()));
+            }
+        }
+
+        //이전 이름은 지울 수 없어 오탐으로 남음. 새 이름만 넣음
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (!enabled || !(event.getEntity() instanceof Member)) {
+                return;
+            }
+            String username = username(event.getPersister(), event.getState());
+            if (event.getOldState() == null || !Objects.equals(username, username(event.getPersister(), event.getOldState()))) {
+                added(username);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return false;
+        }
+
+        private String username(EntityPersister persister, Object[] state) {
+            return (String) state[persister.getEntityMetamodel().getPropertyIndex("username")];
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package study.querydsl.repository.support;
+
+import java.lang.annotation.*;
+
+/**
+ * 첫번째 파라미터(username)와 정확히 같은 회원을 찾는 조회 메서드에 붙인다.
+ *
+ * {@link UsernameFilter} 에 없는 이름이면 {@link UsernameLookupAspect} 가 쿼리 없이 빈 결과(List, Optional)를 돌려준다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface UsernameLookup {
+}
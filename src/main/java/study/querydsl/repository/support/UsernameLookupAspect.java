@@ -0,0 +1,68 @@
+package study.querydsl.repository.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * {@link UsernameLookup} 메서드를 {@link UsernameFilter} 로 먼저 거른다.
+ * 호출한 쪽 트랜잭션을 봐야 해서 트랜잭션 advice 보다 바깥에서 돈다. (telemetry 보다는 안쪽이라 걸러진 호출도 구간에 남음)
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class UsernameLookupAspect {
+
+    private final UsernameFilter usernameFilter;
+
+    public UsernameLookupAspect(UsernameFilter usernameFilter) {
+        this.usernameFilter = usernameFilter;
+    }
+
+    @Around("@annotation(study.querydsl.repository.support.UsernameLookup)")
+    public Object filter(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        Object[] args = joinPoint.getArgs();
+        if (args.length == 0 || !(args[0] instanceof String) || empty(returnType) == null) {
+            return joinPoint.proceed();
+        }
+        UsernameFilter.Check check = usernameFilter.check((String) args[0]);
+        if (check == UsernameFilter.Check.ABSENT) {
+            return empty(returnType);
+        }
+        Object result = joinPoint.proceed();
+        if (check == UsernameFilter.Check.MIGHT_EXIST) {
+            usernameFilter.recordLookup(present(result));
+        }
+        return result;
+    }
+
+    //호출한 쪽이 결과에 add 할 수도 있어서 변경 가능한 list
+    private static Object empty(Class<?> returnType) {
+        if (returnType == Optional.class) {
+            return Optional.empty();
+        }
+        if (returnType.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<>();
+        }
+        return null;
+    }
+
+    private static boolean present(Object result) {
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent();
+        }
+        if (result instanceof Collection) {
+            return !((Collection<?>) result).isEmpty();
+        }
+        return result != null;
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.QueryException;
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * jpql 에서 쓸 수 있게 window function 을 하이버네이트에 등록한다. (hibernate.metadata_builder_contributor)
+ *
+ * jpql 문법에는 over (...) 가 없어서 function('rank_over', 파티션 개수, 파티션..., 정렬식, 방향, ...) 모양으로 받아
+ * rank() over (partition by ... order by ...) 로 그린다. 직접 쓰지 말고 {@link WindowFunctions} 로 만든다.
+ */
+public class WindowFunctionContributor implements MetadataBuilderContributor {
+
+    static final int ASC = 0;
+    static final int DESC = 1;
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction("row_number_over", new WindowFunction("row_number", false, StandardBasicTypes.LONG));
+        metadataBuilder.applySqlFunction("rank_over", new WindowFunction("rank", false, StandardBasicTypes.LONG));
+        metadataBuilder.applySqlFunction("dense_rank_over", new WindowFunction("dense_rank", false, StandardBasicTypes.LONG));
+        metadataBuilder.applySqlFunction("count_over", new WindowFunction("count", true, StandardBasicTypes.LONG));
+        metadataBuilder.applySqlFunction("max_over", new WindowFunction("max", true, null));
+        metadataBuilder.applySqlFunction("min_over", new WindowFunction("min", true, null));
+        metadataBuilder.applySqlFunction("sum_over", new WindowFunction("sum", true, null));
+    }
+
+    static class WindowFunction implements SQLFunction {
+
+        private final String name;
+        private final boolean hasValue;
+        private final Type type; //null 이면 인자 타입 그대로 (max, min, sum)
+
+        WindowFunction(String name, boolean hasValue, Type type) {
+            this.name = name;
+            this.hasValue = hasValue;
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasArguments() {
+            return true;
+        }
+
+        @Override
+        public boolean hasParenthesesIfNoArguments() {
+            return true;
+        }
+
+        @Override
+        public Type getReturnType(Type firstArgumentType, Mapping mapping) {
+            return type != null ? type : firstArgumentType;
+        }
+
+        @Override
+        public String render(Type firstArgumentType, List arguments, SessionFactoryImplementor factory) {
+            int i = 0;
+            StringBuilder sql = new StringBuilder(name).append('(');
+            if (hasValue) {
+                sql.append(argument(arguments, i++));
+            }
+            sql.append(") over (");
+
+            int partitions = Integer.parseInt(argument(arguments, i++).trim());
+            for (int p = 0; p < partitions; p++) {
+                sql.append(p == 0 ? "partition by " : ", ").append(argument(arguments, i++));
+            }
+            if (i < arguments.size()) {
+                sql.append(partitions > 0 ? " order by " : "order by ");
+            }
+            while (i < arguments.size()) {
+                sql.append(argument(arguments, i++));
+                sql.append(Integer.parseInt(argument(arguments, i++).trim()) == DESC ? " desc" : " asc");
+                if (i < arguments.size()) {
+                    sql.append(", ");
+                }
+            }
+            return sql.append(')').toString();
+        }
+
+        private String argument(List<?> arguments, int index) {
+            if (index >= arguments.size()) {
+                throw new QueryException(name + "_over: missing window argument at " + index + ", " + arguments);
+            }
+            return arguments.get(index).toString();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * querydsl 용 window function
+ *
+ * <pre>
+ * rank(over().partitionBy(team.id).orderBy(member.age.desc()))  -> rank() over (partition by team_id order by age desc)
+ * max(member.age, over())                                       -> max(age) over ()
+ * </pre>
+ * 행마다 상관 서브쿼리를 돌리는 대신 한번 읽으면서 계산된다.
+ * window function 은 where 에 쓸 수 없고 jpql 은 from 절 서브쿼리가 없으므로 순위로 거르려면 native sql 로 감싼다.
+ * (MemberRepositoryImpl.findTopByAgePerTeam)
+ * 정렬의 nulls first/last 는 함수 인자로 넘길 수 없어서 받지 않는다.
+ */
+public final class WindowFunctions {
+
+    private WindowFunctions() {
+    }
+
+    public static Window over() {
+        return Window.EMPTY;
+    }
+
+    public static NumberExpression<Long> rowNumber(Window window) {
+        return template(Long.class, "row_number_over", null, window);
+    }
+
+    public static NumberExpression<Long> rank(Window window) {
+        return template(Long.class, "rank_over", null, window);
+    }
+
+    public static NumberExpression<Long> denseRank(Window window) {
+        return template(Long.class, "dense_rank_over", null, window);
+    }
+
+    public static NumberExpression<Long> count(Expression<?> value, Window window) {
+        return template(Long.class, "count_over", value, window);
+    }
+
+    public static <T extends Number & Comparable<?>> NumberExpression<T> max(NumberExpression<T> value, Window window) {
+        return template(value.getType(), "max_over", value, window);
+    }
+
+    public static <T extends Number & Comparable<?>> NumberExpression<T> min(NumberExpression<T> value, Window window) {
+        return template(value.getType(), "min_over", value, window);
+    }
+
+    public static <T extends Number & Comparable<?>> NumberExpression<T> sum(NumberExpression<T> value, Window window) {
+        return template(value.getType(), "sum_over", value, window);
+    }
+
+    //function('rank_over', 파티션 개수, 파티션..., 정렬식, 방향, ...) (WindowFunctionContributor 참고)
+    private static <T extends Number & Comparable<?>> NumberExpression<T> template(
+            Class<? extends T> type, String function, Expression<?> value, Window window) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder template = new StringBuilder("function('").append(function).append('\'');
+        if (value != null) {
+            template.append(", {").append(args.size()).append('}');
+            args.add(value);
+        }
+        template.append(", ").append(window.partitions.size());
+        for (Expression<?> partition : window.partitions) {
+            template.append(", {").append(args.size()).append('}');
+            args.add(partition);
+        }
+        for (OrderSpecifier<?> order : window.orders) {
+            template.append(", {").append(args.size()).append("}, ")
+                    .append(order.isAscending() ? WindowFunctionContributor.ASC : WindowFunctionContributor.DESC);
+            args.add(order.getTarget());
+        }
+        return Expressions.numberTemplate(type, template.append(')').toString(), args.toArray());
+    }
+
+    /**
+     * over (partition by ... order by ...) 절. 불변이라 여러 함수에서 같이 써도 된다.
+     */
+    public static final class Window {
+
+        private static final Window EMPTY = new Window(Collections.emptyList(), Collections.emptyList());
+
+        private final List<Expression<?>> partitions;
+        private final List<OrderSpecifier<?>> orders;
+
+        private Window(List<Expression<?>> partitions, List<OrderSpecifier<?>> orders) {
+            this.partitions = partitions;
+            this.orders = orders;
+        }
+
+        public Window partitionBy(Expression<?>... partitions) {
+            List<Expression<?>> merged = new ArrayList<>(this.partitions);
+            merged.addAll(Arrays.asList(partitions));
+            return new Window(Collections.unmodifiableList(merged), orders);
+        }
+
+        public Window orderBy(OrderSpecifier<?>... orders) {
+            for (OrderSpecifier<?> order : orders) {
+                if (order.getNullHandling() != OrderSpecifier.NullHandling.Default) {
+                    throw new IllegalArgumentException("nulls first/last is not supported in window order: " + order);
+                }
+            }
+            List<OrderSpecifier<?>> merged = new ArrayList<>(this.orders);
+            merged.addAll(Arrays.asList(orders));
+            return new Window(partitions, Collections.unmodifiableList(merged));
+        }
+    }
+}
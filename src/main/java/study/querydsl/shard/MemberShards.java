@@ -0,0 +1,140 @@
+package study.querydsl.shard;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 회원 샤드 목록
+ *
+ * Member 는 teamId % N 번째 샤드에 저장하고 (팀이 없는 회원은 0번), Team 은 모든 샤드에 같은 id 로 복제한다.
+ * 각 샤드는 자기 DataSource 와 EntityManagerFactory 를 가지고, 스프링 트랜잭션과 무관하게 샤드 단위로 쓴다.
+ * 회원 id 는 샤드마다 sequence 가 따로지만 구간이 겹치지 않게 시작해서 (샤드 i 는 i * 2^40 + 1 부터) 샤드를 넘어서도 유일하다.
+ */
+public class MemberShards implements AutoCloseable {
+
+    //샤드 하나가 쓰는 회원 id 구간 크기 (2^40)
+    static final int MEMBER_ID_BITS = 40;
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService executor;
+
+    public MemberShards(List<ShardResources> resources) {
+        for (int i = 0; i < resources.size(); i++) {
+            shards.add(new Shard(i, resources.get(i)));
+        }
+        this.executor = Executors.newFixedThreadPool(resources.size() * 2);
+    }
+
+    public Shard forTeam(Long teamId) {
+        return teamId == null ? shards.get(0) : shards.get((int) Math.floorMod(teamId, (long) shards.size()));
+    }
+
+    //회원 id 가 발급된 샤드
+    public Shard forMemberId(long memberId) {
+        long index = (memberId - 1) >>> MEMBER_ID_BITS;
+        if (memberId < 1 || index >= shards.size()) {
+            throw new IllegalArgumentException("member id is not in any shard range: " + memberId);
+        }
+        return shards.get((int) index);
+    }
+
+    //샤드의 회원 sequence 시작 값
+    public static long firstMemberId(int shardIndex) {
+        return ((long) shardIndex << MEMBER_ID_BITS) + 1;
+    }
+
+    public List<Shard> all() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Shard shard : shards) {
+            shard.resources.close();
+        }
+    }
+
+    public static class Shard {
+        private final int index;
+        private final ShardResources resources;
+        private final LongAdder reads = new LongAdder();
+
+        Shard(int index, ShardResources resources) {
+            this.index = index;
+            this.resources = resources;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        //이 샤드에 보낸 조회 수 (라우팅 확인용)
+        public long getReads() {
+            return reads.sum();
+        }
+
+        //조회는 트랜잭션 없이 em 하나로 실행하고 닫음. 결과 엔티티는 준영속
+        public <T> T read(Function<JPAQueryFactory, T> query) {
+            reads.increment();
+            EntityManager em = resources.emf.createEntityManager();
+            try {
+                return query.apply(new JPAQueryFactory(em));
+            } finally {
+                em.close();
+            }
+        }
+
+        public void write(Consumer<EntityManager> work) {
+            EntityManager em = resources.emf.createEntityManager();
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                work.accept(em);
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                throw e;
+            } finally {
+                em.close();
+            }
+        }
+    }
+
+    public static class ShardResources {
+        private final HikariDataSource dataSource;
+        private final LocalContainerEntityManagerFactoryBean factoryBean;
+        private final EntityManagerFactory emf;
+
+        //스프링 프록시가 아닌 하이버네이트 EntityManagerFactory 를 직접 써서 메인 트랜잭션에 끌려가지 않게 함
+        public ShardResources(HikariDataSource dataSource, LocalContainerEntityManagerFactoryBean factoryBean) {
+            this.dataSource = dataSource;
+            this.factoryBean = factoryBean;
+            this.emf = factoryBean.getNativeEntityManagerFactory();
+        }
+
+        void close() {
+            factoryBean.destroy();
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.support.BlockSequenceGenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * study.querydsl.shard.urls 가 있을 때만 켜지는 회원 샤딩
+ *
+ * study.querydsl.shard.urls: jdbc:h2:tcp://localhost/~/shard0,jdbc:h2:tcp://localhost/~/shard1
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "study.querydsl.shard", name = "urls")
+public class ShardConfig {
+
+    @Bean(destroyMethod = "close")
+    public MemberShards memberShards(@Value("${study.querydsl.shard.urls}") String[] urls,
+                                     @Value("${study.querydsl.shard.ddl-auto:create}") String ddlAuto,
+                                     @Value("${spring.datasource.username:sa}") String username,
+                                     @Value("${spring.datasource.password:}") String password,
+                                     EntityManagerFactoryBuilder builder,
+                                     ObjectProvider<HibernatePropertiesCustomizer> customizers) {
+        List<MemberShards.ShardResources> resources = new ArrayList<>();
+        try {
+            for (int i = 0; i < urls.length; i++) {
+                HikariDataSource dataSource = DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(urls[i].trim())
+                        .username(username)
+                        .password(password)
+                        .build();
+                try {
+                    LocalContainerEntityManagerFactoryBean factoryBean = builder
+                            .dataSource(dataSource)
+                            .packages(Member.class)
+                            .persistenceUnit("shard" + i)
+                            .properties(shardProperties(i, ddlAuto, customizers))
+                            .build();
+                    factoryBean.afterPropertiesSet();
+                    resources.add(new MemberShards.ShardResources(dataSource, factoryBean));
+                } catch (RuntimeException e) {
+                    dataSource.close();
+                    throw e;
+                }
+            }
+        } catch (RuntimeException e) {
+            //중간 샤드에서 실패하면 앞에서 만든 샤드를 닫고 기동 실패
+            for (MemberShards.ShardResources built : resources) {
+                try {
+                    built.close();
+                } catch (RuntimeException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw e;
+        }
+        return new MemberShards(resources);
+    }
+
+    //메인 EntityManagerFactory 에서 HibernateJpaConfiguration 이 넣어주는 설정은 직접 넣어줌
+    //HibernatePropertiesCustomizer (DataVersion, SearchResultCache, UsernameFilter, DbTelemetry) 도 샤드마다 적용해서
+    //샤드에 쓴 회원, 팀도 ETag, 검색 캐시, username 필터에 반영되게 함. 인스턴스를 샤드마다 새로 만들어 넣으므로 map 도 샤드마다
+    private static Map<String, Object> shardProperties(int index, String ddlAuto,
+                                                       ObjectProvider<HibernatePropertiesCustomizer> customizers) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hbm2ddl.auto", ddlAuto);
+        properties.put("hibernate.physical_naming_strategy", SpringPhysicalNamingStrategy.class.getName());
+        properties.put("hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName());
+        //회원 id 구간을 샤드마다 나눔 (MemberShards.forMemberId). sequence 를 만들 때만 쓰이므로
+        //ddl-auto 가 create 가 아니면 이미 있는 sequence 를 이 값 이상으로 맞춰둬야 함
+        properties.put(BlockSequenceGenerator.INITIAL_VALUE, String.valueOf(MemberShards.firstMemberId(index)));
+        customizers.orderedStream().forEach(customizer -> customizer.customize(properties));
+        return properties;
+    }
+
+    @Bean
+    public ShardedMemberRepository shardedMemberRepository(MemberShards memberShards) {
+        return new ShardedMemberRepository(memberShards);
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 샤드별로 정렬된 부분 결과를 k-way merge 해서 전체 순서의 [offset, offset + size) 구간을 만든다.
+ * 정렬 값이 같으면 샤드 번호 순으로 놓아서 같은 요청은 항상 같은 페이지가 나온다.
+ */
+public final class ShardMerge {
+
+    private ShardMerge() {
+    }
+
+    public static <T> List<T> page(List<List<T>> sortedParts, Comparator<? super T> comparator, long offset, int size) {
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>((a, b) -> {
+            int result = comparator.compare(a.current, b.current);
+            return result != 0 ? result : Integer.compare(a.part, b.part);
+        });
+        for (int i = 0; i < sortedParts.size(); i++) {
+            Iterator<T> iterator = sortedParts.get(i).iterator();
+            if (iterator.hasNext()) {
+                heap.add(new Cursor<>(i, iterator));
+            }
+        }
+
+        List<T> result = new ArrayList<>(size);
+        long skipped = 0;
+        while (!heap.isEmpty() && result.size() < size) {
+            Cursor<T> cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(cursor.current);
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private static class Cursor<T> {
+        private final int part;
+        private final Iterator<T> iterator;
+        private T current;
+
+        Cursor(int part, Iterator<T> iterator) {
+            this.part = part;
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+    }
+}
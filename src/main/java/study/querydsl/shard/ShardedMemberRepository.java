@@ -0,0 +1,283 @@
+package study.querydsl.shard;
+
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+import static org.springframework.util.StringUtils.isEmpty;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 기준으로 샤딩된 회원 레파지토리
+ *
+ * teamName 조건이 있으면 그 팀이 있는 샤드에만 보내고, 없으면 모든 샤드에 병렬로 보낸 뒤 합친다.
+ * 페이징은 샤드마다 offset + size 건을 같은 정렬로 가져와서 k-way merge 하고, total 은 샤드별 count 의 합이다.
+ * 회원 id 는 샤드마다 겹치지 않는 구간에서 발급되므로 샤드를 넘어서도 유일하고, {@link MemberShards#forMemberId} 로 샤드를 찾는다.
+ */
+public class ShardedMemberRepository {
+
+    private static final Map<String, SortKey<MemberTeamDto>> DTO_SORT_KEYS = new LinkedHashMap<>();
+    private static final Map<String, SortKey<Member>> MEMBER_SORT_KEYS = new LinkedHashMap<>();
+
+    static {
+        DTO_SORT_KEYS.put("memberId", new SortKey<>(member.id, MemberTeamDto::getMemberId));
+        DTO_SORT_KEYS.put("username", new SortKey<>(member.username, MemberTeamDto::getUsername));
+        DTO_SORT_KEYS.put("age", new SortKey<>(member.age, MemberTeamDto::getAge));
+        DTO_SORT_KEYS.put("teamId", new SortKey<>(team.id, MemberTeamDto::getTeamId));
+        DTO_SORT_KEYS.put("teamName", new SortKey<>(team.name, MemberTeamDto::getTeamName));
+
+        MEMBER_SORT_KEYS.put("id", new SortKey<>(member.id, Member::getId));
+        MEMBER_SORT_KEYS.put("username", new SortKey<>(member.username, Member::getUsername));
+        MEMBER_SORT_KEYS.put("age", new SortKey<>(member.age, Member::getAge));
+    }
+
+    private final MemberShards shards;
+
+    public ShardedMemberRepository(MemberShards shards) {
+        this.shards = shards;
+    }
+
+    //팀은 0번 샤드에서 id 를 받고 나머지 샤드에는 같은 id 로 복제
+    //샤드를 묶는 트랜잭션이 없어서 복제 중 실패하면 모든 샤드에서 그 팀을 지우고(보상) 예외를 던진다.
+    //보상까지 실패하면 일부 샤드에만 팀이 남는다 (suppressed 로 붙음). 그때는 replicateTeam 으로 빠진 샤드를 채운다
+    public void saveTeam(Team newTeam) {
+        shards.all().get(0).write(em -> em.persist(newTeam));
+        try {
+            replicateTeam(newTeam);
+        } catch (RuntimeException e) {
+            for (MemberShards.Shard shard : shards.all()) {
+                try {
+                    shard.write(em -> em.createNativeQuery("delete from team where id = ?")
+                            .setParameter(1, newTeam.getId())
+                            .executeUpdate());
+                } catch (RuntimeException compensation) {
+                    e.addSuppressed(compensation);
+                }
+            }
+            throw e;
+        }
+    }
+
+    //0번 샤드에 있는 팀을 아직 없는 샤드에만 넣음. 여러번 불러도 결과가 같다
+    public void replicateTeam(Team savedTeam) {
+        for (MemberShards.Shard shard : shards.all().subList(1, shards.all().size())) {
+            shard.write(em -> em.createNativeQuery("insert into team (id, name, member_count) " +
+                            "select cast(? as bigint), cast(? as varchar), 0 from dual " +
+                            "where not exists (select 1 from team where id = ?)")
+                    .setParameter(1, savedTeam.getId())
+                    .setParameter(2, savedTeam.getName())
+                    .setParameter(3, savedTeam.getId())
+                    .executeUpdate());
+        }
+    }
+
+    public void save(Member newMember) {
+        Long teamId = newMember.getTeam() == null ? null : newMember.getTeam().getId();
+        shards.forTeam(teamId).write(em -> {
+            em.persist(newMember);
+            if (teamId != null) {
+                em.createQuery("update Team t set t.memberCount = t.memberCount + 1 where t.id = :id")
+                        .setParameter("id", teamId)
+                        .executeUpdate();
+            }
+        });
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<List<MemberTeamDto>> parts = fanOut(targetShards(condition.getTeamName()), shard -> shard.read(queryFactory -> queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .fetch()));
+        return parts.stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        long limit = pageable.getOffset() + pageable.getPageSize();
+        OrderSpecifier<?>[] orders = orders(pageable.getSort(), DTO_SORT_KEYS, member.id);
+        List<QueryResults<MemberTeamDto>> parts = fanOut(targetShards(condition.getTeamName()), shard -> shard.read(queryFactory -> queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .orderBy(orders)
+                .limit(limit)
+                .fetchResults()));
+        return merge(parts, comparator(pageable.getSort(), DTO_SORT_KEYS, MemberTeamDto::getMemberId), pageable);
+    }
+
+    //MemberTestRepository.applyPagination 의 샤딩 버전. 반환 엔티티는 준영속이고 team 은 로딩되지 않음
+    public Page<Member> applyPagination(MemberSearchCondition condition, Pageable pageable) {
+        long limit = pageable.getOffset() + pageable.getPageSize();
+        OrderSpecifier<?>[] orders = orders(pageable.getSort(), MEMBER_SORT_KEYS, member.id);
+        List<QueryResults<Member>> parts = fanOut(targetShards(condition.getTeamName()), shard -> shard.read(queryFactory -> queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .orderBy(orders)
+                .limit(limit)
+                .fetchResults()));
+        return merge(parts, comparator(pageable.getSort(), MEMBER_SORT_KEYS, Member::getId), pageable);
+    }
+
+    private <T> Page<T> merge(List<QueryResults<T>> parts, Comparator<T> comparator, Pageable pageable) {
+        long total = parts.stream().mapToLong(QueryResults::getTotal).sum();
+        List<T> content = ShardMerge.page(
+                parts.stream().map(QueryResults::getResults).collect(Collectors.toList()),
+                comparator, pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    //teamName 이 있으면 그 이름의 팀이 있는 샤드만 (팀은 모든 샤드에 복제되어 있으므로 0번에서 찾음)
+    private List<MemberShards.Shard> targetShards(String teamName) {
+        if (!hasText(teamName)) {
+            return shards.all();
+        }
+        List<Long> teamIds = shards.all().get(0).read(queryFactory -> queryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(teamName))
+                .fetch());
+        return teamIds.stream()
+                .map(shards::forTeam)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private <T> List<T> fanOut(List<MemberShards.Shard> targets, Function<MemberShards.Shard, T> work) {
+        if (targets.size() == 1) {
+            return List.of(work.apply(targets.get(0)));
+        }
+        List<CompletableFuture<T>> futures = targets.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> work.apply(shard), shards.executor()))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    //샤드 사이에 순서가 똑같도록 마지막에 id 로 한번 더 정렬
+    private static <T> OrderSpecifier<?>[] orders(Sort sort, Map<String, SortKey<T>> keys,
+                                                  ComparableExpressionBase<?> idPath) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = sortKey(keys, order.getProperty()).path;
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+        }
+        orders.add(idPath.asc());
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+
+    private static <T> Comparator<T> comparator(Sort sort, Map<String, SortKey<T>> keys, Function<T, Long> id) {
+        List<Sort.Order> sortOrders = sort.toList();
+        return (a, b) -> {
+            for (Sort.Order order : sortOrders) {
+                Function<T, ? extends Comparable<?>> value = sortKey(keys, order.getProperty()).value;
+                int result = compareNullsFirst(value.apply(a), value.apply(b));
+                if (result != 0) {
+                    return order.isAscending() ? result : -result;
+                }
+            }
+            return compareNullsFirst(id.apply(a), id.apply(b));
+        };
+    }
+
+    private static <T> SortKey<T> sortKey(Map<String, SortKey<T>> keys, String property) {
+        SortKey<T> key = keys.get(property);
+        if (key == null) {
+            throw new IllegalArgumentException("unsupported sort property for sharded search: " + property);
+        }
+        return key;
+    }
+
+    //h2 기본 정렬과 같게 null 을 asc 에서 앞에, desc 에서 뒤에 둔다
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareNullsFirst(Comparable a, Comparable b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static class SortKey<T> {
+        private final ComparableExpressionBase<?> path;
+        private final Function<T, ? extends Comparable<?>> value;
+
+        SortKey(ComparableExpressionBase<?> path, Function<T, ? extends Comparable<?>> value) {
+            this.path = path;
+            this.value = value;
+        }
+    }
+
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (isEmpty(username)) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return isEmpty(teamName) ? null : team.name.eq(teamName);
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe == null ? null : member.age.goe(ageGoe);
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe == null ? null : member.age.loe(ageLoe);
+    }
+}
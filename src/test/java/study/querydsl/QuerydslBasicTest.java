@@ -35,6 +35,8 @@ import java.util.List;
 import static org.assertj.core.api.Assertions.*;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.*;
+import static study.querydsl.repository.support.WindowFunctions.max;
+import static study.querydsl.repository.support.WindowFunctions.over;
 
 @SpringBootTest
 @Transactional
@@ -590,6 +592,21 @@ from Member member1
         Member member1 */
     }
 
+    //서브쿼리 대신 window function 으로 팀별 최고 나이를 한번에 (max(age) over (partition by team_id))
+    @Test
+    public void findUserDtoWindow() {
+        List<UserDto> result = queryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(max(member.age, over().partitionBy(member.team.id)), "age")))
+                .from(member)
+                .where(member.team.name.in("teamA", "teamB"))
+                .orderBy(member.username.asc())
+                .fetch();
+
+        assertThat(result).extracting("age").containsExactly(20, 20, 40, 40);
+    }
+
     @Test //가장 빠른 해결책인데, 단점도 많다. (근데 뭐에 대한 해결책...?)
     public void findDtoByQueryProjection(){
         List<MemberDto> result = queryFactory //타입을 그대로 가져가기 때문에, 타입이 틀리면 에러를 준다.
@@ -0,0 +1,68 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void notModified() throws Exception {
+        MvcResult result = mockMvc.perform(get("/v2/members"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        String etag = result.getResponse().getHeader("ETag");
+        assertThat(etag).isNotNull();
+
+        //데이터가 안 바뀌었으면 쿼리 없이 304
+        mockMvc.perform(get("/v2/members").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        //member 에 쓰기가 나가면 버전이 올라가서 다시 조회
+        writeMember();
+        mockMvc.perform(get("/v2/members").header("If-None-Match", etag))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("ETag", not(etag)));
+    }
+
+    @Test
+    public void changeTeamNotFound() throws Exception {
+        mockMvc.perform(post("/v1/members/{memberId}/team/{teamId}", Long.MAX_VALUE, Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    private void writeMember() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.persist(new Member("member1", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+    }
+}
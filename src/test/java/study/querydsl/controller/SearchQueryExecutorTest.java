@@ -0,0 +1,104 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class SearchQueryExecutorTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    SearchQueryExecutor searchQueryExecutor;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Value("${study.querydsl.search.threads:16}")
+    int threads;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("singleFlightTeam");
+            em.persist(team);
+            em.persist(new Member("singleFlightMember", 10, team));
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    public void cancelledLeaderIsNotShared() throws Exception {
+        //검색 스레드를 전부 막아서 leader 가 시작 전에 취소되게 함
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            searchQueryExecutor.execute(new MockHttpServletRequest(), () -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+        }
+
+        MvcResult leader = mockMvc.perform(get("/v1/members").param("teamName", "singleFlightTeam"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult follower = mockMvc.perform(get("/v1/members").param("teamName", "singleFlightTeam"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //leader 요청 시간 초과
+        MockAsyncContext asyncContext = (MockAsyncContext) leader.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        release.countDown();
+
+        //합류한 요청은 빈 결과가 아니라 직접 다시 실행한 결과를 받음
+        follower.getAsyncResult(10_000);
+        String body = mockMvc.perform(asyncDispatch(follower))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(body).contains("singleFlightMember");
+    }
+}
@@ -0,0 +1,60 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void concurrentCallsShareOneExecution() {
+        SingleFlight singleFlight = new SingleFlight(Duration.ZERO, meterRegistry);
+        AtomicInteger executions = new AtomicInteger();
+        CompletableFuture<String> leader = new CompletableFuture<>();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(singleFlight.run("key", () -> {
+                executions.incrementAndGet();
+                return leader;
+            }));
+        }
+        leader.complete("result");
+
+        assertThat(executions).hasValue(1);
+        assertThat(results).allSatisfy(result -> assertThat(result.join()).isEqualTo("result"));
+        assertThat(meterRegistry.get("member.search.coalesce.ratio").gauge().value()).isEqualTo(0.9);
+
+        //끝난 뒤에는 reuse 가 0 이면 다시 실행
+        singleFlight.run("key", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture("again");
+        });
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    public void failureIsNotReused() {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofMinutes(1), meterRegistry);
+        CompletableFuture<String> failed = singleFlight.run("key",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("boom")));
+        assertThat(failed).isCompletedExceptionally();
+
+        CompletableFuture<String> ok = singleFlight.run("key", () -> CompletableFuture.completedFuture("ok"));
+        CompletableFuture<String> reused = singleFlight.run("key", () -> CompletableFuture.completedFuture("other"));
+
+        assertThat(ok.join()).isEqualTo("ok");
+        assertThat(reused.join()).isEqualTo("ok");
+        assertThat(meterRegistry.get("member.search.coalesce").tag("role", "reused").counter().count()).isEqualTo(1);
+    }
+}
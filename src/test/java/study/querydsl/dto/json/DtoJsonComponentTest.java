@@ -0,0 +1,77 @@
+package study.querydsl.dto.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UserDto;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DtoJsonComponentTest {
+
+    ObjectMapper defaultMapper = new ObjectMapper();
+    ObjectMapper streamingMapper = new ObjectMapper().registerModule(DtoJsonComponent.module());
+
+    //필드 순서, null 까지 기본 databind 와 바이트 단위로 같아야 함
+    @Test
+    public void sameJson() throws Exception {
+        assertSameBytes(List.of(
+                new MemberTeamDto(1L, "member1", 10, 2L, "teamA"),
+                new MemberTeamDto(3L, "member2", 20, null, null),
+                new MemberTeamDto(null, null, 0, null, null)));
+    }
+
+    @Test
+    public void sameJsonMemberDto() throws Exception {
+        assertSameBytes(List.of(
+                new MemberDto("member1", 10),
+                new MemberDto(null, 0),
+                new MemberDto("\"quoted\" \u00e9", -1)));
+    }
+
+    @Test
+    public void sameJsonUserDto() throws Exception {
+        assertSameBytes(List.of(
+                new UserDto("member1", 10),
+                new UserDto(null, 0),
+                new UserDto("\"quoted\" \u00e9", Integer.MAX_VALUE)));
+    }
+
+    private void assertSameBytes(List<?> dtos) throws Exception {
+        assertThat(streamingMapper.writeValueAsBytes(dtos)).isEqualTo(defaultMapper.writeValueAsBytes(dtos));
+        for (Object dto : dtos) {
+            assertThat(streamingMapper.writeValueAsBytes(dto)).isEqualTo(defaultMapper.writeValueAsBytes(dto));
+        }
+    }
+
+    //기본 databind vs 전용 serializer 처리량 비교
+    @Test
+    @Tag("benchmark")
+    public void benchmark() throws Exception {
+        List<MemberTeamDto> dtos = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            dtos.add(new MemberTeamDto((long) i, "member" + i, i % 100, (long) (i % 10), "team" + (i % 10)));
+        }
+        for (int i = 0; i < 5; i++) { //워밍업
+            defaultMapper.writeValue(OutputStream.nullOutputStream(), dtos);
+            streamingMapper.writeValue(OutputStream.nullOutputStream(), dtos);
+        }
+
+        System.out.println("default rows/sec = " + rowsPerSec(defaultMapper, dtos));
+        System.out.println("streaming rows/sec = " + rowsPerSec(streamingMapper, dtos));
+    }
+
+    private long rowsPerSec(ObjectMapper mapper, List<MemberTeamDto> dtos) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            mapper.writeValue(OutputStream.nullOutputStream(), dtos);
+        }
+        return dtos.size() * 10 * 1_000_000_000L / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.entity;
+
+import org.hibernate.engine.spi.ManagedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 관리 엔티티 수에 따른 flush 비용 (변경 없음 / 1% 변경)
+ *
+ * 향상된 빌드와 향상 안 된 빌드를 각각 돌려서 비교한다.
+ * ./gradlew benchmark --tests '*FlushBenchmarkTest' -PflushBenchmarkSizes=10000,100000,1000000
+ * ./gradlew benchmark --tests '*FlushBenchmarkTest' -PflushBenchmarkSizes=10000,100000,1000000 -PhibernateEnhance=false
+ */
+@SpringBootTest
+@Tag("benchmark")
+class FlushBenchmarkTest {
+
+    static final long FIRST_ID = 1_000_000_000L; //시퀀스로 발급되는 id 와 겹치지 않게
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                em.createNativeQuery("delete from member where member_id >= " + FIRST_ID).executeUpdate());
+    }
+
+    @Test
+    public void flushCost() {
+        boolean enhanced = SelfDirtinessTracker.class.isAssignableFrom(Member.class);
+        assertThat(ManagedEntity.class.isAssignableFrom(Member.class)).isEqualTo(enhanced);
+        System.out.println("Member bytecode enhanced = " + enhanced);
+
+        for (int size : sizes()) {
+            insert(size);
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.executeWithoutResult(status -> {
+                List<Member> members = em
+                        .createQuery("select m from Member m where m.id >= :first", Member.class)
+                        .setParameter("first", FIRST_ID)
+                        .getResultList();
+                assertThat(members).hasSize(size);
+
+                long clean = timeFlush();
+                for (int i = 0; i < members.size(); i += 100) {
+                    members.get(i).setAge(members.get(i).getAge() + 1);
+                }
+                long dirty = timeFlush();
+                System.out.println("managed = " + size + ", flush clean(ms) = " + clean + ", flush 1% dirty(ms) = " + dirty);
+                status.setRollbackOnly();
+            });
+            after();
+        }
+    }
+
+    private long timeFlush() {
+        long start = System.nanoTime();
+        em.flush();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    //엔티티를 거치지 않고 sql 로 바로 넣음
+    private void insert(int size) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> em
+                .createNativeQuery("insert into member (member_id, username, age) " +
+                        "select x, 'flush' || x, mod(x, 100) from system_range(?, ?)")
+                .setParameter(1, FIRST_ID)
+                .setParameter(2, FIRST_ID + size - 1)
+                .executeUpdate());
+    }
+
+    private static int[] sizes() {
+        return Arrays.stream(System.getProperty("flushBenchmark.sizes", "10000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+}
@@ -0,0 +1,70 @@
+package study.querydsl.export;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberBinaryWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void regions() throws Exception {
+        //구간을 아주 작게 잡아서 레코드마다 다시 매핑되게 함
+        Path file = dir.resolve("members.bin");
+        try (MemberBinaryWriter writer = new MemberBinaryWriter(file, 16)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.write((long) i + 1, "member" + i, i % 100, i % 3 == 0 ? null : (long) i % 3, "team" + i % 3);
+            }
+            writer.finish();
+        }
+
+        try (MemberBinaryReader reader = new MemberBinaryReader(file, 16)) {
+            int count = 0;
+            while (reader.next()) {
+                assertThat(reader.memberId()).isEqualTo(count + 1);
+                assertThat(reader.username()).isEqualTo("member" + count);
+                assertThat(reader.age()).isEqualTo(count % 100);
+                assertThat(reader.teamName()).isEqualTo(count % 3 == 0 ? null : "team" + count % 3);
+                count++;
+            }
+            assertThat(count).isEqualTo(1000);
+        }
+    }
+
+    @Test
+    public void failedExportLeavesNoFile() throws Exception {
+        Path file = dir.resolve("members.bin");
+        try (MemberBinaryWriter writer = new MemberBinaryWriter(file)) {
+            writer.write(1L, "member1", 10, null, null);
+            //finish 전에 실패
+        }
+        assertThat(file).doesNotExist();
+        assertThat(dir.resolve("members.bin.tmp")).doesNotExist();
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws Exception {
+        Path file = dir.resolve("members.bin");
+        try (MemberBinaryWriter writer = new MemberBinaryWriter(file)) {
+            writer.write(1L, "member1", 10, 1L, "teamA");
+            writer.write(2L, "member2", 20, 1L, "teamA");
+            writer.finish();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = dir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4)); //END 와 마지막 이름 일부를 잘라냄
+
+        try (MemberBinaryReader reader = new MemberBinaryReader(truncated)) {
+            assertThat(reader.next()).isTrue();
+            assertThatThrownBy(reader::next).isInstanceOf(IllegalStateException.class);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package study.querydsl.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.TeamJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//바이너리 export/import 를 json 과 비교 (시간, 파일 크기)
+@SpringBootTest
+@Tag("benchmark")
+class MemberExportBenchmarkTest {
+
+    static final int MEMBER_COUNT = 50_000;
+    static final String PREFIX = "exportBench";
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberExportService memberExportService;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    TransactionTemplate tx;
+    List<Long> teamIds;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamIds = tx.execute(status -> {
+            List<Team> teams = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Team team = new Team(PREFIX + "Team" + i);
+                teamJpaRepository.save(team);
+                teams.add(team);
+            }
+            List<Long> ids = new ArrayList<>();
+            teams.forEach(team -> ids.add(team.getId()));
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                members.add(new Member(PREFIX + i, i % 100, i % 7 == 0 ? null : teams.get(i % 10)));
+            }
+            memberJpaRepository.saveAll(members);
+            return ids;
+        });
+    }
+
+    //import 한 회원도 같은 이름, 같은 팀으로 들어가므로 같이 지워짐
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like :prefix or m.team.id in :teamIds")
+                    .setParameter("prefix", PREFIX + "%")
+                    .setParameter("teamIds", teamIds)
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+        });
+    }
+
+    @Test
+    public void exportImport() throws Exception {
+        Path binary = dir.resolve("members.bin");
+        long start = System.nanoTime();
+        long exported = memberExportService.exportTo(binary);
+        long binaryMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Path json = dir.resolve("members.json");
+        start = System.nanoTime();
+        List<MemberTeamDto> dtos = tx.execute(status -> memberJpaRepository.search(new MemberSearchCondition()));
+        objectMapper.writeValue(json.toFile(), dtos);
+        long jsonMillis = (System.nanoTime() - start) / 1_000_000;
+
+        //다른 테스트가 남긴 회원이 있어도 export 는 전체 테이블
+        assertThat(exported).isGreaterThanOrEqualTo(MEMBER_COUNT);
+        System.out.println("binary export(ms) = " + binaryMillis + ", size = " + Files.size(binary));
+        System.out.println("json export(ms) = " + jsonMillis + ", size = " + Files.size(json));
+
+        //import 는 이 테스트가 넣은 회원만 (다른 회원을 복제하지 않도록)
+        Path own = dir.resolve("own.bin");
+        try (MemberBinaryReader reader = new MemberBinaryReader(binary);
+             MemberBinaryWriter writer = new MemberBinaryWriter(own)) {
+            while (reader.next()) {
+                if (reader.username().startsWith(PREFIX)) {
+                    writer.write(reader.memberId(), reader.username(), reader.age(), reader.teamId(), reader.teamName());
+                }
+            }
+            writer.finish();
+            assertThat(writer.getMemberCount()).isEqualTo(MEMBER_COUNT);
+        }
+
+        start = System.nanoTime();
+        long imported = memberExportService.importFrom(own);
+        long importMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        JsonNode fromJson = objectMapper.readTree(json.toFile());
+        long jsonReadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(imported).isEqualTo(MEMBER_COUNT);
+        System.out.println("binary import(ms) = " + importMillis + ", json parse only(ms) = " + jsonReadMillis
+                + " (" + fromJson.size() + " rows)");
+    }
+}
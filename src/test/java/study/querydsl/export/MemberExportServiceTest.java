@@ -0,0 +1,131 @@
+package study.querydsl.export;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.TeamJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+//export 한 파일을 읽고 다시 import 하면 원본과 같은 내용 (이 테스트가 넣은 회원만 비교)
+@SpringBootTest
+class MemberExportServiceTest {
+
+    static final int MEMBER_COUNT = 30;
+    static final String PREFIX = "exportMember";
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    MemberExportService memberExportService;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    TransactionTemplate tx;
+    List<Long> teamIds;
+    Map<Long, String> seeded; //member id -> "username/age/teamName"
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamIds = new ArrayList<>();
+        seeded = new HashMap<>();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("exportTeamA");
+            Team teamB = new Team("exportTeamB");
+            teamJpaRepository.save(teamA);
+            teamJpaRepository.save(teamB);
+            teamIds.add(teamA.getId());
+            teamIds.add(teamB.getId());
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                members.add(new Member(PREFIX + i, i % 100, i % 7 == 0 ? null : (i % 2 == 0 ? teamA : teamB)));
+            }
+            memberJpaRepository.saveAll(members);
+            members.forEach(m -> seeded.put(m.getId(),
+                    row(m.getUsername(), m.getAge(), m.getTeam() == null ? null : m.getTeam().getName())));
+        });
+    }
+
+    //import 한 회원도 같은 이름, 같은 팀으로 들어가므로 같이 지워짐
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like :prefix or m.team.id in :teamIds")
+                    .setParameter("prefix", PREFIX + "%")
+                    .setParameter("teamIds", teamIds)
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+        });
+    }
+
+    @Test
+    public void exportImport() throws Exception {
+        Path binary = dir.resolve("members.bin");
+        long exported = memberExportService.exportTo(binary);
+        assertThat(exported).isGreaterThanOrEqualTo(MEMBER_COUNT);
+
+        //파일에서 이 테스트의 회원만 골라 원본과 비교하고, import 할 파일로 따로 씀
+        Path own = dir.resolve("own.bin");
+        Map<Long, String> read = new HashMap<>();
+        try (MemberBinaryReader reader = new MemberBinaryReader(binary);
+             MemberBinaryWriter writer = new MemberBinaryWriter(own)) {
+            while (reader.next()) {
+                if (reader.username().startsWith(PREFIX)) {
+                    read.put(reader.memberId(), row(reader.username(), reader.age(), reader.teamName()));
+                    writer.write(reader.memberId(), reader.username(), reader.age(), reader.teamId(), reader.teamName());
+                }
+            }
+            writer.finish();
+        }
+        assertThat(read).isEqualTo(seeded);
+
+        long imported = memberExportService.importFrom(own);
+        assertThat(imported).isEqualTo(MEMBER_COUNT);
+
+        //새 id 로 들어가고, 팀은 이름으로 기존 팀을 다시 씀
+        List<Tuple> rows = tx.execute(status -> queryFactory
+                .select(member.id, member.username, member.age, team.id, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.username.startsWith(PREFIX), member.id.notIn(seeded.keySet()))
+                .fetch());
+        assertThat(rows).extracting(t -> row(t.get(member.username), t.get(member.age), t.get(team.name)))
+                .containsExactlyInAnyOrderElementsOf(seeded.values());
+        assertThat(rows.stream().map(t -> t.get(team.id)).filter(id -> id != null).collect(Collectors.toSet()))
+                .isSubsetOf(teamIds);
+    }
+
+    private static String row(String username, Integer age, String teamName) {
+        return username + "/" + age + "/" + teamName;
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class DbTelemetryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    DbTelemetry dbTelemetry;
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void byRepositoryMethod() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        em.flush();
+        em.clear();
+
+        RequestTelemetry telemetry = RequestTelemetry.begin("test-request");
+        List<Member> members;
+        try {
+            members = memberJpaRepository.findAll();
+            memberRepository.findByUsername("member1");
+        } finally {
+            RequestTelemetry.end();
+        }
+        telemetry.finish("GET /test");
+        dbTelemetry.completed(telemetry);
+
+        DbStats findAll = telemetry.getMethods().get("MemberJpaRepository.findAll");
+        assertThat(findAll.getCalls()).isEqualTo(1);
+        assertThat(findAll.getStatements()).isEqualTo(1);
+        assertThat(findAll.getEntitiesLoaded()).isEqualTo(members.size());
+        assertThat(telemetry.getMethods()).containsKey("MemberRepository.findByUsername");
+
+        assertThat(dbTelemetry.find("test-request")).isSameAs(telemetry);
+        assertThat(dbTelemetry.byEndpoint()).containsKey("GET /test");
+        assertThat(dbTelemetry.byMethod().get("MemberJpaRepository.findAll").getCalls()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void unmatchedUrlsShareOneEndpoint() throws Exception {
+        mockMvc.perform(get("/no-such-path/1"));
+        mockMvc.perform(get("/no-such-path/2"));
+
+        assertThat(dbTelemetry.byEndpoint()).doesNotContainKeys("GET /no-such-path/1", "GET /no-such-path/2");
+    }
+}
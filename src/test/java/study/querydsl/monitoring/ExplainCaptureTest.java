@@ -0,0 +1,73 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import study.querydsl.repository.support.QueryShape;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//캡처는 jdbc 이벤트만 받으므로 스프링 컨텍스트 없이 메모리 h2 로 확인
+class ExplainCaptureTest {
+
+    static final String SQL = "select id from item where name = 'a'";
+
+    JdbcTemplate jdbcTemplate;
+    ExplainCapture explainCapture;
+
+    @BeforeEach
+    public void before() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:explainCapture;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("create table item (id bigint primary key, name varchar(255))");
+        explainCapture = new ExplainCapture(jdbcTemplate, Duration.ofMillis(100), 10, false);
+    }
+
+    @AfterEach
+    public void after() {
+        explainCapture.shutdown();
+        jdbcTemplate.execute("drop table item");
+    }
+
+    @Test
+    public void capturesSlowQueryOnce() throws InterruptedException {
+        QueryShape.run("ItemRepository.findByName", "name", () -> {
+            execute(SQL, 200);
+            execute(SQL, 300); //같은 메서드, 모양, sql 은 한번만
+            execute("select id from item", 10); //threshold 미만
+            return null;
+        });
+        execute("select name from item", 500); //QueryShape 밖
+
+        Collection<ExplainCapture.CapturedPlan> plans = awaitPlans();
+        assertThat(plans).hasSize(1);
+        ExplainCapture.CapturedPlan plan = plans.iterator().next();
+        assertThat(plan.getMethod()).isEqualTo("ItemRepository.findByName");
+        assertThat(plan.getShape()).isEqualTo("name");
+        assertThat(plan.getMillis()).isEqualTo(200);
+        //ANALYZE 가 아니라서 쿼리를 다시 실행하지 않음 (scanCount 없음)
+        assertThat(plan.getPlan()).containsIgnoringCase("PUBLIC.ITEM").doesNotContain("scanCount");
+    }
+
+    private void execute(String sql, long millis) {
+        StatementInformation statement = new StatementInformation(null);
+        statement.setStatementQuery(sql);
+        explainCapture.onAfterAnyExecute(statement, Duration.ofMillis(millis).toNanos(), null);
+    }
+
+    //EXPLAIN 은 별도 스레드에서 실행됨
+    private Collection<ExplainCapture.CapturedPlan> awaitPlans() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        Collection<ExplainCapture.CapturedPlan> plans = explainCapture.plans();
+        while (plans.stream().anyMatch(plan -> plan.getPlan() == null) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            plans = explainCapture.plans();
+        }
+        return plans;
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SlowQueryLogTest {
+
+    @Test
+    public void keepsRecentSlowQueries() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ofMillis(100), 0, 2);
+
+        execute(slowQueryLog, "select 1", 50);
+        execute(slowQueryLog, "select 2", 150);
+        execute(slowQueryLog, "select 3", 300);
+        execute(slowQueryLog, "select 4", 200);
+
+        //빠른 건 안 남고, 느린 것 중 최근 capacity 개만 느린 순으로
+        assertThat(slowQueryLog.recent()).extracting("sql").containsExactly("select 3", "select 4");
+        assertThat(slowQueryLog.recent()).extracting("millis").containsExactly(300L, 200L);
+
+        slowQueryLog.setThreshold(Duration.ofMillis(10));
+        execute(slowQueryLog, "select 5", 50);
+        assertThat(slowQueryLog.recent()).extracting("sql").containsExactly("select 4", "select 5");
+    }
+
+    @Test
+    public void capacityMustBePositive() {
+        assertThatThrownBy(() -> new SlowQueryLog(Duration.ofMillis(100), 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SlowQueryLog(Duration.ofMillis(100), 0, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ofMillis(100), 0, 1);
+        execute(slowQueryLog, "select 1", 150);
+        execute(slowQueryLog, "select 2", 120);
+        assertThat(slowQueryLog.recent()).extracting("sql").containsExactly("select 2");
+    }
+
+    @Test
+    public void sampleRateMustBeRatio() {
+        assertThatThrownBy(() -> new SlowQueryLog(Duration.ofMillis(100), 1.5, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ofMillis(100), 0, 10);
+        assertThatThrownBy(() -> slowQueryLog.setSampleRate(-0.1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> slowQueryLog.setSampleRate(Double.NaN)).isInstanceOf(IllegalArgumentException.class);
+        slowQueryLog.setSampleRate(1);
+        assertThat(slowQueryLog.getSampleRate()).isEqualTo(1);
+    }
+
+    private void execute(SlowQueryLog slowQueryLog, String sql, long millis) {
+        StatementInformation statement = new StatementInformation(null);
+        statement.setStatementQuery(sql);
+        slowQueryLog.onAfterAnyExecute(statement, Duration.ofMillis(millis).toNanos(), null);
+    }
+}
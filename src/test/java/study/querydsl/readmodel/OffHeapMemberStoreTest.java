@@ -0,0 +1,51 @@
+package study.querydsl.readmodel;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapMemberStoreTest {
+
+    @Test
+    public void lookups() {
+        //처음 크기보다 많이 넣어서 버퍼가 늘어나는 경우도 봄
+        OffHeapMemberStore.Builder builder = OffHeapMemberStore.builder(1);
+        for (long id = 1; id <= 1000; id++) {
+            builder.add(id, "member" + (id % 500), (int) (id % 100), id % 3 == 0 ? null : id % 3, "team" + (id % 3));
+        }
+        builder.add(5000, null, 10, null, null);
+        builder.add(5001, "회원", 20, 7L, null);
+        OffHeapMemberStore store = builder.build();
+
+        assertThat(store.size()).isEqualTo(1002);
+        MemberTeamDto member = store.findById(4).get();
+        assertThat(member).isEqualTo(new MemberTeamDto(4L, "member4", 4, 1L, "team1"));
+        assertThat(store.findById(3).get().getTeamId()).isNull();
+        assertThat(store.findById(5000).get().getUsername()).isNull();
+        assertThat(store.findById(5001).get()).isEqualTo(new MemberTeamDto(5001L, "회원", 20, 7L, null));
+        assertThat(store.findById(1001)).isEmpty();
+
+        //같은 이름은 전부
+        assertThat(store.findByUsername("member4")).extracting("memberId").containsExactlyInAnyOrder(4L, 504L);
+        assertThat(store.findByUsername("회원")).extracting("memberId").containsExactly(5001L);
+        assertThat(store.findByUsername("member500")).isEmpty();
+        assertThat(store.findByUsername(null)).isEmpty();
+    }
+
+    @Test
+    public void duplicateId() {
+        OffHeapMemberStore.Builder builder = OffHeapMemberStore.builder(2)
+                .add(1, "a", 1, null, null)
+                .add(1, "b", 2, null, null);
+        assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void empty() {
+        OffHeapMemberStore store = OffHeapMemberStore.empty();
+        assertThat(store.findById(1)).isEmpty();
+        assertThat(store.findByUsername("a")).isEmpty();
+    }
+}
@@ -0,0 +1,182 @@
+package study.querydsl.readmodel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 회원 전체를 힙에 엔티티로 들고 있을 때와 off-heap 스냅샷으로 들고 있을 때
+ * 남는 힙, full gc 시간, 조회 중 gc 횟수/시간, 조회 지연시간 비교
+ *
+ * ./gradlew benchmark --tests '*OffHeapReadModelBenchmarkTest' -PreadModelBenchmarkMembers=1000000 (기본 100000)
+ */
+@SpringBootTest
+@Tag("benchmark")
+class OffHeapReadModelBenchmarkTest {
+
+    static final long FIRST_ID = 1_000_000_000L; //시퀀스로 발급되는 id 와 겹치지 않게
+    static final int TEAMS = 100;
+    static final int LOOKUPS = 1_000_000;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberReadModel memberReadModel;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    int size;
+
+    @BeforeEach
+    public void before() {
+        size = Integer.getInteger("readModelBenchmark.members", 100_000);
+        //엔티티를 거치지 않고 sql 로 바로 넣음
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createNativeQuery("insert into team (id, name, member_count) " +
+                            "select x, 'readModel' || x, 0 from system_range(?, ?)")
+                    .setParameter(1, FIRST_ID)
+                    .setParameter(2, FIRST_ID + TEAMS - 1)
+                    .executeUpdate();
+            em.createNativeQuery("insert into member (member_id, username, age, team_id) " +
+                            "select x, 'readModel' || x, mod(x, 100), ? + mod(x, ?) from system_range(?, ?)")
+                    .setParameter(1, FIRST_ID)
+                    .setParameter(2, TEAMS)
+                    .setParameter(3, FIRST_ID)
+                    .setParameter(4, FIRST_ID + size - 1)
+                    .executeUpdate();
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createNativeQuery("delete from member where member_id >= " + FIRST_ID).executeUpdate();
+            em.createNativeQuery("delete from team where id >= " + FIRST_ID).executeUpdate();
+        });
+        memberReadModel.refresh();
+    }
+
+    @Test
+    public void onHeapVsOffHeap() {
+        long[] ids = randomIds();
+
+        //힙: 준영속 엔티티를 id, username 으로 찾는 map
+        Map<Long, Member> byId = new HashMap<>();
+        Map<String, List<Member>> byUsername = new HashMap<>();
+        long baseHeap = usedHeapAfterGc();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Member> members = em
+                    .createQuery("select m from Member m left join fetch m.team where m.id >= :first", Member.class)
+                    .setParameter("first", FIRST_ID)
+                    .getResultList();
+            for (Member m : members) {
+                byId.put(m.getId(), m);
+                byUsername.computeIfAbsent(m.getUsername(), name -> new ArrayList<>()).add(m);
+            }
+            em.clear();
+        });
+        assertThat(byId).hasSize(size);
+        Result onHeap = measure("on-heap", baseHeap, ids, id -> {
+            Member m = byId.get(id);
+            return new MemberTeamDto(m.getId(), m.getUsername(), m.getAge(), m.getTeam().getId(), m.getTeam().getName());
+        });
+        Member sample = byId.get(ids[0]);
+        byId.clear();
+        byUsername.clear();
+
+        //off-heap
+        baseHeap = usedHeapAfterGc();
+        OffHeapMemberStore store = memberReadModel.refresh();
+        Result offHeap = measure("off-heap", baseHeap, ids, id -> store.findById(id).get());
+        System.out.println("off-heap bytes = " + store.offHeapBytes());
+
+        //같은 값을 돌려줘야 함
+        MemberTeamDto dto = store.findById(sample.getId()).get();
+        assertThat(dto.getUsername()).isEqualTo(sample.getUsername());
+        assertThat(dto.getAge()).isEqualTo(sample.getAge());
+        assertThat(dto.getTeamId()).isEqualTo(sample.getTeam().getId());
+        assertThat(dto.getTeamName()).isEqualTo(sample.getTeam().getName());
+        assertThat(store.findByUsername(sample.getUsername())).extracting("memberId").containsExactly(sample.getId());
+        assertThat(offHeap.retainedHeap).isLessThan(onHeap.retainedHeap);
+    }
+
+    private Result measure(String name, long baseHeap, long[] ids, LongFunction<MemberTeamDto> lookup) {
+        Result result = new Result();
+        result.retainedHeap = usedHeapAfterGc() - baseHeap;
+
+        long start = System.nanoTime();
+        System.gc();
+        result.fullGcMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long[] latencies = new long[LOOKUPS];
+        long ages = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            long opStart = System.nanoTime();
+            ages += lookup.apply(ids[i % ids.length]).getAge();
+            latencies[i] = System.nanoTime() - opStart;
+        }
+        Arrays.sort(latencies);
+
+        System.out.println(name + ": members = " + size
+                + ", retained heap(MB) = " + result.retainedHeap / (1024 * 1024)
+                + ", System.gc(ms) = " + result.fullGcMillis
+                + ", gc during lookups = " + (gcCount() - gcCount) + " / " + (gcMillis() - gcMillis) + "ms"
+                + ", lookup p50(ns) = " + latencies[LOOKUPS / 2]
+                + ", p99(ns) = " + latencies[LOOKUPS / 100 * 99]
+                + ", p99.9(ns) = " + latencies[LOOKUPS / 1000 * 999]
+                + " (ages = " + ages + ")");
+        return result;
+    }
+
+    private long[] randomIds() {
+        Random random = new Random(42);
+        long[] ids = new long[100_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = FIRST_ID + random.nextInt(size);
+        }
+        return ids;
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    static class Result {
+        long retainedHeap;
+        long fullGcMillis;
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//block_size 별 초당 insert 수 비교. 블록 크기는 부트 시점에 정해지므로 크기마다 컨텍스트를 따로 띄운다
+//컨텍스트마다 ddl-auto 로 sequence 를 자기 증가값으로 다시 만들기 때문에 db 도 따로 씀.
+//같은 db 를 쓰면 먼저 뜬 컨텍스트(pooled-lo)가 다른 증가값의 sequence 를 읽어 id 가 겹친다
+class IdBlockSizeBenchmarkTest {
+
+    static final int MEMBER_COUNT = 20_000;
+
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:block1;DB_CLOSE_DELAY=-1",
+            "spring.jpa.properties.study.querydsl.id.block_size=1"})
+    static class BlockSize1 extends Benchmark {
+    }
+
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:block50;DB_CLOSE_DELAY=-1",
+            "spring.jpa.properties.study.querydsl.id.block_size=50"})
+    static class BlockSize50 extends Benchmark {
+    }
+
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:block1000;DB_CLOSE_DELAY=-1",
+            "spring.jpa.properties.study.querydsl.id.block_size=1000"})
+    static class BlockSize1000 extends Benchmark {
+    }
+
+    @Tag("benchmark") //상속돼서 위 클래스들에 붙음
+    abstract static class Benchmark {
+
+        @Autowired
+        MemberJpaRepository memberJpaRepository;
+        @Autowired
+        TeamJpaRepository teamJpaRepository;
+        @Autowired
+        PlatformTransactionManager transactionManager;
+
+        @Test
+        public void insertThroughput() {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.executeWithoutResult(status -> {
+                Team team = new Team("bench");
+                teamJpaRepository.save(team);
+
+                List<Member> members = new ArrayList<>();
+                for (int i = 0; i < MEMBER_COUNT; i++) {
+                    members.add(new Member("bench" + i, i % 100, team));
+                }
+
+                long start = System.nanoTime();
+                memberJpaRepository.saveAll(members);
+                status.flush();
+                long elapsed = System.nanoTime() - start;
+
+                System.out.println(getClass().getSimpleName() + " inserts/sec = "
+                        + (MEMBER_COUNT * 1_000_000_000L / elapsed));
+                status.setRollbackOnly();
+            });
+        }
+    }
+}
@@ -1,20 +1,29 @@
 package study.querydsl.repository;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberRankDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryDeadline;
 
 import javax.persistence.EntityManager;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.support.WindowFunctions.over;
 
 @SpringBootTest
 @Transactional
@@ -26,6 +35,10 @@ class MemberJpaRepositoryTest {
     MemberJpaRepository memberJpaRepository;
     @Autowired
     MemberRepository memberRepository;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+    @Autowired
+    JPAQueryFactory queryFactory;
 
 
     @Test
@@ -64,7 +77,152 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    @Test
+    public void readOnlyQueriesSkipDirtyChecking() {
+        Team team = new Team("readOnlyTeam");
+        em.persist(team);
+        Member saved = new Member("readOnlyMember", 10, team);
+        em.persist(saved);
+        em.flush();
+        em.clear();
+
+        //findAll (읽기 전용 힌트) 과 @ReadOnlyQueries 레파지토리의 결과는 스냅샷 없이 읽기 전용
+        Session session = em.unwrap(Session.class);
+        List<Member> found = memberJpaRepository.findAll();
+        assertThat(found).filteredOn(m -> m.getId().equals(saved.getId())).hasSize(1).allMatch(session::isReadOnly);
+        em.clear();
+        List<Member> tested = memberTestRepository.basicSelectFrom();
+        assertThat(tested).filteredOn(m -> m.getId().equals(saved.getId())).hasSize(1).allMatch(session::isReadOnly);
+
+        //바꿔도 flush 때 update 가 나가지 않음
+        tested.stream().filter(m -> m.getId().equals(saved.getId())).forEach(m -> m.setAge(99));
+        em.flush();
+        em.clear();
+        assertThat(em.find(Member.class, saved.getId()).getAge()).isEqualTo(10);
+    }
+
+    @Test
+    public void searchUsernameIgnoreCase() {
+        Team team = new Team("ignoreCaseTeam");
+        em.persist(team);
+        em.persist(new Member("IgnoreCaseMember", 10, team));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("iGnOrEcAsEmEmBeR");
+        condition.setUsernameIgnoreCase(true);
+        condition.setTeamName("ignoreCaseTeam");
+        assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("IgnoreCaseMember");
+    }
+
+    @Test
+    public void bulkUpdateKeepsNormalizedColumn() {
+        Team team = new Team("ignoreCaseTeam");
+        em.persist(team);
+        em.persist(new Member("IgnoreCaseMember", 10, team));
+        em.flush();
 
+        //bulk update 는 엔티티를 거치지 않지만 username_lower 는 db 가 계산
+        queryFactory
+                .update(member)
+                .set(member.username, "IgnoreCaseRenamed")
+                .where(member.team.eq(team))
+                .execute();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("IGNORECASERENAMED");
+        condition.setUsernameIgnoreCase(true);
+        condition.setTeamName("ignoreCaseTeam");
+        assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("IgnoreCaseRenamed");
+    }
+
+    @Test
+    public void usernameLowerUsesIndex() {
+        String plan = (String) em.createNativeQuery(
+                "explain select member_id from member where username_lower = 'ignorecasemember'").getSingleResult();
+        assertThat(plan).containsIgnoringCase("idx_member_username_lower");
+    }
+
+    @Test
+    public void searchDeadline() {
+        memberJpaRepository.save(new Member("member1", 10));
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        List<MemberTeamDto> result = QueryDeadline.run(QueryDeadline.after(Duration.ofSeconds(5)),
+                () -> memberJpaRepository.search(condition));
+        assertThat(result).extracting("username").containsExactly("member1");
+
+        //마감이 지나면 쿼리를 보내지 않고 바로 실패
+        assertThatThrownBy(() -> QueryDeadline.run(QueryDeadline.after(Duration.ZERO),
+                () -> memberJpaRepository.search(condition)))
+                .isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    public void shortDeadlineStillTimesOut() {
+        //1~499ms 가 남아도 0초(무제한)가 아니라 1초로 올림
+        Integer timeout = QueryDeadline.run(QueryDeadline.after(Duration.ofMillis(300)),
+                () -> QueryDeadline.applyTo(queryFactory.selectFrom(member))
+                        .createQuery()
+                        .unwrap(org.hibernate.query.Query.class)
+                        .getTimeout());
+        assertThat(timeout).isEqualTo(1);
+
+        timeout = QueryDeadline.run(QueryDeadline.after(Duration.ofMillis(2500)),
+                () -> QueryDeadline.applyTo(queryFactory.selectFrom(member))
+                        .createQuery()
+                        .unwrap(org.hibernate.query.Query.class)
+                        .getTimeout());
+        assertThat(timeout).isEqualTo(3);
+    }
+
+
+
+    @Test
+    public void rankByAgeInTeam() {
+        Team teamA = new Team("rankTeamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 30, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("rankTeamA");
+        List<MemberRankDto> result = memberRepository.rankByAgeInTeam(condition);
+
+        //같은 나이는 같은 순위, 다음 순위는 건너뜀
+        assertThat(result).extracting("ageRank").containsExactly(1L, 1L, 3L, 4L);
+        assertThat(result).extracting("teamMaxAge").containsOnly(30);
+        assertThat(result).extracting("teamSize").containsOnly(4L);
+    }
+
+    @Test
+    public void findTopByAgePerTeam() {
+        Team teamA = new Team("topTeamA");
+        Team teamB = new Team("topTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 1; i <= 5; i++) {
+            em.persist(new Member("a" + i, i * 10, teamA));
+            em.persist(new Member("b" + i, i, teamB));
+        }
+
+        List<MemberRankDto> result = memberRepository.findTopByAgePerTeam(2).stream()
+                .filter(dto -> dto.getTeamName() != null && dto.getTeamName().startsWith("topTeam"))
+                .collect(Collectors.toList());
+
+        assertThat(result).extracting("username").containsExactly("a5", "a4", "b5", "b4");
+        assertThat(result).extracting("ageRank").containsExactly(1L, 2L, 1L, 2L);
+        assertThat(result).extracting("teamMaxAge").containsExactly(50, 50, 5, 5);
+        assertThat(result).extracting("teamSize").containsExactly(5L, 5L, 5L, 5L);
+    }
+
+    @Test
+    public void windowOrderRejectsNullHandling() {
+        assertThatThrownBy(() -> over().orderBy(member.age.desc().nullsLast()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 
     @Test
     public void querydslPredicateExcutorTest(){
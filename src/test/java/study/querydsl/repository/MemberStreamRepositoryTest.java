@@ -0,0 +1,150 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//커밋된 데이터를 stateless session 으로 읽어서 @Transactional 테스트가 아님
+@SpringBootTest
+class MemberStreamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberStreamRepository memberStreamRepository;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    List<Long> teamIds;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamIds = tx.execute(status -> {
+            Team teamA = new Team("streamTeamA");
+            Team teamB = new Team("streamTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 500; i++) {
+                em.persist(new Member((i % 2 == 0 ? "StreamMember" : "streamMember") + i, i % 50, i % 3 == 0 ? null : i % 3 == 1 ? teamA : teamB));
+            }
+            return Arrays.asList(teamA.getId(), teamB.getId());
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            //팀 없는 회원도 있어서 이름으로 지움
+            em.createQuery("delete from Member m where m.usernameLower like 'streammember%'").executeUpdate();
+            em.createQuery("delete from Team t where t.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+        });
+    }
+
+    @Test
+    public void sameAsSearch() {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        conditions.add(new MemberSearchCondition());
+        MemberSearchCondition byTeamAndAge = new MemberSearchCondition();
+        byTeamAndAge.setTeamName("streamTeamB");
+        byTeamAndAge.setAgeGoe(10);
+        byTeamAndAge.setAgeLoe(30);
+        conditions.add(byTeamAndAge);
+        MemberSearchCondition ignoreCase = new MemberSearchCondition();
+        ignoreCase.setUsername("STREAMMEMBER10");
+        ignoreCase.setUsernameIgnoreCase(true);
+        conditions.add(ignoreCase);
+
+        for (MemberSearchCondition condition : conditions) {
+            List<MemberTeamDto> expected = tx.execute(status -> memberRepository.search(condition));
+            List<MemberTeamDto> streamed = memberStreamRepository.search(condition).collectList().block();
+            assertThat(streamed).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void readsOnlyRequested() {
+        int available = memberStreamRepository.availableCursors();
+
+        //request 한 만큼만 오고, 취소하면 cursor 를 닫음
+        StepVerifier.create(memberStreamRepository.search(new MemberSearchCondition()), 0)
+                .expectSubscription()
+                .thenRequest(3)
+                .expectNextCount(3)
+                .thenCancel()
+                .verify();
+
+        assertThat(memberStreamRepository.availableCursors()).isEqualTo(available);
+    }
+
+    @Test
+    public void rejectsWhenAllCursorsOpen() {
+        List<BaseSubscriber<MemberTeamDto>> idle = new ArrayList<>();
+        try {
+            int available = memberStreamRepository.availableCursors();
+            for (int i = 0; i < available; i++) {
+                BaseSubscriber<MemberTeamDto> subscriber = new BaseSubscriber<MemberTeamDto>() {
+                    @Override
+                    protected void hookOnSubscribe(Subscription subscription) {
+                        //아무것도 request 하지 않는 느린 구독자
+                    }
+                };
+                memberStreamRepository.search(new MemberSearchCondition()).subscribe(subscriber);
+                idle.add(subscriber);
+            }
+
+            StepVerifier.create(memberStreamRepository.search(new MemberSearchCondition()))
+                    .expectError(RejectedExecutionException.class)
+                    .verify();
+        } finally {
+            idle.forEach(BaseSubscriber::dispose);
+        }
+    }
+
+    @Test
+    public void idleTimeoutStartsAfterFirstRow() {
+        MemberStreamRepository repository = new MemberStreamRepository(emf, 1, 100,
+                Duration.ofSeconds(10), Duration.ofMillis(200));
+        try {
+            //첫 행 전에는 idle-timeout 이 지나도 끊지 않고, 첫 행 뒤로는 안 읽으면 끊음
+            StepVerifier.create(repository.search(new MemberSearchCondition()), 0)
+                    .expectSubscription()
+                    .expectNoEvent(Duration.ofMillis(500))
+                    .thenRequest(1)
+                    .expectNextCount(1)
+                    .expectError(TimeoutException.class)
+                    .verify(Duration.ofSeconds(5));
+            assertThat(repository.availableCursors()).isEqualTo(1);
+        } finally {
+            repository.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("statelessTeamA");
+        Team teamB = new Team("statelessTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("statelessMember1", 10, teamA));
+        em.persist(new Member("statelessMember2", 20, teamA));
+        em.persist(new Member("statelessMember3", 30, teamB));
+        em.persist(new Member("StatelessMember4", 40, teamB));
+    }
+
+    @Test
+    public void scanMembersSeesUnflushedChanges() {
+        //persist 만 하고 flush 안 한 회원도 stateless 조회에 보임
+        assertThat(scan(condition(null, "statelessTeamB", 35, null))).extracting("username")
+                .containsExactly("StatelessMember4");
+    }
+
+    @Test
+    public void scanMembersAreDetachedWithTeam() {
+        List<Member> scanned = scan(condition(null, "statelessTeamA", null, null));
+
+        assertThat(scanned).hasSize(2);
+        for (Member m : scanned) {
+            assertThat(em.contains(m)).isFalse();
+            assertThat(Hibernate.isInitialized(m.getTeam())).isTrue(); //fetch join
+            assertThat(m.getTeam().getName()).isEqualTo("statelessTeamA");
+        }
+    }
+
+    //searchMember 와 같은 조건이면 같은 회원
+    @Test
+    public void scanMembersMatchesSearchMember() {
+        em.flush();
+        em.clear();
+        List<MemberSearchCondition> conditions = List.of(
+                condition(null, "statelessTeamA", 0, 100),
+                condition(null, "statelessTeamB", 35, 100),
+                condition("statelessMember4", null, 0, 100),
+                condition("STATELESSMEMBER4", null, 0, 100),
+                condition("statelessMember1", "statelessTeamB", 0, 100),
+                condition(null, "statelessTeamA", 15, 30));
+        conditions.get(3).setUsernameIgnoreCase(true);
+
+        for (MemberSearchCondition condition : conditions) {
+            List<Long> expected = memberJpaRepository.searchMember(condition).stream()
+                    .map(Member::getId)
+                    .collect(Collectors.toList());
+            assertThat(scan(condition)).extracting("id").containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    private List<Member> scan(MemberSearchCondition condition) {
+        List<Member> scanned = new ArrayList<>();
+        memberTestRepository.scanMembers(condition, scanned::add);
+        return scanned;
+    }
+
+    private static MemberSearchCondition condition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
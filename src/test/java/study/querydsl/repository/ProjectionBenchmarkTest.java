@@ -0,0 +1,152 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.FastProjections;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+//dto 프로젝션 방식별 초당 생성 행 수 (db 를 빼고 FactoryExpression.newInstance 만 측정)
+@SpringBootTest
+@Transactional
+class ProjectionBenchmarkTest {
+
+    static final int ROWS = 2_000_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void sameResultAsProjections() {
+        em.persist(new Member("fast1", 10));
+        em.persist(new Member("fast2", 20));
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        List<MemberDto> bean = queryFactory
+                .select(FastProjections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.username.startsWith("fast"))
+                .orderBy(member.username.asc())
+                .fetch();
+        List<MemberDto> constructor = queryFactory
+                .select(FastProjections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.username.startsWith("fast"))
+                .orderBy(member.username.asc())
+                .fetch();
+        List<MemberDto> fields = queryFactory
+                .select(FastProjections.fields(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.username.startsWith("fast"))
+                .orderBy(member.username.asc())
+                .fetch();
+        List<UserDto> fieldAlias = queryFactory
+                .select(FastProjections.fields(UserDto.class, member.username.as("name"), member.age))
+                .from(member)
+                .where(member.username.startsWith("fast"))
+                .orderBy(member.username.asc())
+                .fetch();
+        List<UserDto> alias = queryFactory
+                .select(FastProjections.bean(UserDto.class, ExpressionUtils.as(member.username, "name"), member.age))
+                .from(member)
+                .where(member.username.startsWith("fast"))
+                .orderBy(member.username.asc())
+                .fetch();
+
+        List<MemberDto> expected = queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.username.startsWith("fast"))
+                .orderBy(member.username.asc())
+                .fetch();
+        assertThat(bean).isEqualTo(expected);
+        assertThat(constructor).isEqualTo(expected);
+        assertThat(fields).isEqualTo(expected);
+        assertThat(fieldAlias).extracting("name").containsExactly("fast1", "fast2");
+        assertThat(alias).extracting("name").containsExactly("fast1", "fast2");
+    }
+
+    @Test
+    public void nullPrimitiveColumn() {
+        //회원이 없는 팀을 left join 하면 age 가 null. Projections.constructor 처럼 0 으로 넣음
+        em.persist(new Team("emptyFastTeam"));
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        List<MemberDto> constructor = queryFactory
+                .select(FastProjections.constructor(MemberDto.class, team.name, member.age))
+                .from(team)
+                .leftJoin(team.members, member)
+                .where(team.name.eq("emptyFastTeam"))
+                .fetch();
+        List<MemberDto> bean = queryFactory
+                .select(FastProjections.bean(MemberDto.class, team.name.as("username"), member.age))
+                .from(team)
+                .leftJoin(team.members, member)
+                .where(team.name.eq("emptyFastTeam"))
+                .fetch();
+        List<MemberDto> expected = queryFactory
+                .select(Projections.constructor(MemberDto.class, team.name, member.age))
+                .from(team)
+                .leftJoin(team.members, member)
+                .where(team.name.eq("emptyFastTeam"))
+                .fetch();
+
+        assertThat(expected).extracting("age").containsExactly(0);
+        assertThat(constructor).isEqualTo(expected);
+        assertThat(bean).isEqualTo(expected);
+        List<MemberDto> fields = queryFactory
+                .select(FastProjections.fields(MemberDto.class, team.name.as("username"), member.age))
+                .from(team)
+                .leftJoin(team.members, member)
+                .where(team.name.eq("emptyFastTeam"))
+                .fetch();
+        assertThat(fields).isEqualTo(expected);
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void rowsPerSecond() {
+        Object[][] rows = new Object[1024][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"member" + i, i};
+        }
+        measure("Projections.bean", Projections.bean(MemberDto.class, member.username, member.age), rows);
+        measure("Projections.fields", Projections.fields(MemberDto.class, member.username, member.age), rows);
+        measure("Projections.constructor", Projections.constructor(MemberDto.class, member.username, member.age), rows);
+        measure("@QueryProjection", new QMemberDto(member.username, member.age), rows);
+        measure("FastProjections.bean", FastProjections.bean(MemberDto.class, member.username, member.age), rows);
+        measure("FastProjections.fields", FastProjections.fields(MemberDto.class, member.username, member.age), rows);
+        measure("FastProjections.constructor", FastProjections.constructor(MemberDto.class, member.username, member.age), rows);
+    }
+
+    private void measure(String name, FactoryExpression<MemberDto> projection, Object[][] rows) {
+        long checksum = 0;
+        for (int i = 0; i < ROWS; i++) { //워밍업
+            checksum += projection.newInstance(rows[i & (rows.length - 1)]).getAge();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            checksum += projection.newInstance(rows[i & (rows.length - 1)]).getAge();
+        }
+        long nanos = System.nanoTime() - start;
+        assertThat(checksum).isPositive();
+        System.out.println(name + " rows/s = " + (long) (ROWS / (nanos / 1_000_000_000.0)));
+    }
+}
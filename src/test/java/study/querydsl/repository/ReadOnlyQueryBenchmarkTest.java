@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//관리 엔티티 조회(findAll_Querydsl) vs 읽기 전용 조회(findAll) 의 메모리, flush 시간 비교
+@SpringBootTest
+@Tag("benchmark")
+class ReadOnlyQueryBenchmarkTest {
+
+    static final int MEMBER_COUNT = 50_000;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("readOnlyBench");
+            teamJpaRepository.save(team);
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                members.add(new Member("readOnlyBench" + i, i % 100, team));
+            }
+            memberJpaRepository.saveAll(members);
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    public void managedVsReadOnly() {
+        measure("managed", memberJpaRepository::findAll_Querydsl);
+        measure("readOnly", memberJpaRepository::findAll);
+    }
+
+    private void measure(String name, Supplier<List<Member>> query) {
+        tx.executeWithoutResult(status -> {
+            long before = usedHeap();
+            List<Member> result = query.get();
+            long heap = usedHeap() - before;
+
+            long start = System.nanoTime();
+            em.flush();
+            long flushMicros = (System.nanoTime() - start) / 1000;
+
+            assertThat(result).hasSizeGreaterThanOrEqualTo(MEMBER_COUNT); //다른 데이터가 있어도 전체를 읽음
+            System.out.println(name + " heap(KB) = " + heap / 1024 + ", flush(us) = " + flushMicros);
+        });
+    }
+
+    private long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,193 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//캐시는 읽기 전용 트랜잭션에서만 써서 @Transactional 테스트가 아님
+@SpringBootTest
+class SearchResultCacheTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    TransactionTemplate readOnlyTx;
+    Long teamAId;
+    Long teamBId;
+    Long memberA1Id;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("cacheTeamA");
+            Team teamB = new Team("cacheTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member memberA1 = new Member("a1", 10, teamA);
+            em.persist(memberA1);
+            em.persist(new Member("a2", 20, teamA));
+            em.persist(new Member("b1", 30, teamB));
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+            memberA1Id = memberA1.getId();
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            List<Long> teamIds = Arrays.asList(teamAId, teamBId);
+            em.createQuery("delete from Member m where m.team.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+            em.createQuery("delete from Team t where t.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+        });
+    }
+
+    @Test
+    public void hit() {
+        List<MemberTeamDto> first = search("cacheTeamA");
+        double hits = hits();
+        List<MemberTeamDto> second = search("cacheTeamA");
+
+        assertThat(hits()).isEqualTo(hits + 1);
+        assertThat(second).isEqualTo(first);
+
+        //쓰기 트랜잭션 안에서는 캐시를 안 씀
+        tx.executeWithoutResult(status -> memberRepository.search(condition("cacheTeamA")));
+        assertThat(hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void invalidatesOnlyMatchingResults() {
+        search("cacheTeamA");
+        search("cacheTeamB");
+        page("cacheTeamA");
+
+        tx.executeWithoutResult(status -> em.find(Member.class, memberA1Id).setAge(11));
+
+        double hits = hits();
+        assertThat(search("cacheTeamA")).extracting("age").containsExactlyInAnyOrder(11, 20);
+        assertThat(page("cacheTeamA")).extracting("age").containsExactlyInAnyOrder(11, 20);
+        assertThat(hits()).isEqualTo(hits);
+
+        //teamB 결과는 남아 있음
+        search("cacheTeamB");
+        assertThat(hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void autoFlushIsNotBulk() {
+        search("cacheTeamA");
+        search("cacheTeamB");
+
+        //쿼리 전 auto flush 로 나간 insert 도 엔티티 이벤트로 처리해서 걸리는 결과만 지움
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("a3", 30, em.find(Team.class, teamAId)));
+            em.createQuery("select m from Member m where m.username = :username", Member.class)
+                    .setParameter("username", "a3")
+                    .getResultList();
+        });
+
+        double hits = hits();
+        assertThat(search("cacheTeamA")).extracting("username").containsExactlyInAnyOrder("a1", "a2", "a3");
+        assertThat(hits()).isEqualTo(hits);
+        search("cacheTeamB");
+        assertThat(hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void changeTeamResolvesOldTeamName() {
+        search("cacheTeamA");
+        search("cacheTeamB");
+        search("cacheTeamX"); //아무 회원도 없는 팀 이름
+
+        //이전 팀은 로딩 안 된 프록시. 이름을 읽어서 걸리는 결과만 지움 (모르는 팀으로 보고 전부 지우지 않음)
+        memberJpaRepository.changeTeam(memberA1Id, teamBId);
+
+        double hits = hits();
+        assertThat(search("cacheTeamA")).extracting("username").containsExactly("a2");
+        assertThat(search("cacheTeamB")).extracting("username").containsExactlyInAnyOrder("a1", "b1");
+        assertThat(hits()).isEqualTo(hits);
+        search("cacheTeamX");
+        assertThat(hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void teamRename() {
+        search("cacheTeamA");
+        search(null);
+
+        tx.executeWithoutResult(status -> em.find(Team.class, teamAId).setName("cacheTeamC"));
+
+        assertThat(search("cacheTeamA")).isEmpty();
+        assertThat(search(null)).extracting("teamName").contains("cacheTeamC").doesNotContain("cacheTeamA");
+    }
+
+    @Test
+    public void bulkUpdateInvalidatesAll() {
+        search("cacheTeamA");
+        search("cacheTeamB");
+
+        //카운터 증감은 검색 결과와 무관해서 그대로
+        tx.executeWithoutResult(status -> teamJpaRepository.addMemberCount(teamAId, 1));
+        double hits = hits();
+        search("cacheTeamB");
+        assertThat(hits()).isEqualTo(hits + 1);
+
+        tx.executeWithoutResult(status -> em.createQuery("update Member m set m.age = m.age + 1").executeUpdate());
+
+        hits = hits();
+        assertThat(search("cacheTeamA")).extracting("age").containsExactlyInAnyOrder(11, 21);
+        assertThat(search("cacheTeamB")).extracting("age").containsExactly(31);
+        assertThat(hits()).isEqualTo(hits);
+    }
+
+    private List<MemberTeamDto> search(String teamName) {
+        return readOnlyTx.execute(status -> memberRepository.search(condition(teamName)));
+    }
+
+    private List<MemberTeamDto> page(String teamName) {
+        return readOnlyTx.execute(status -> memberRepository.searchPageSimple(condition(teamName), PageRequest.of(0, 10)))
+                .getContent();
+    }
+
+    private static MemberSearchCondition condition(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tags("cache", "member.search", "result", "hit")
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,108 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//관리 엔티티 조회(searchMember) vs stateless 스캔(scanMembers) 의 남는 메모리, 이후 flush 시간 비교
+@SpringBootTest
+@Tag("benchmark")
+class StatelessScanBenchmarkTest {
+
+    static final int MEMBER_COUNT = 50_000;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("scanBench");
+            teamJpaRepository.save(team);
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                members.add(new Member("scanBench" + i, i % 100, team));
+            }
+            memberJpaRepository.saveAll(members);
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    public void managedVsStateless() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("scanBench");
+        condition.setAgeGoe(0); //searchMember 는 나이 범위가 꼭 있어야 함
+        condition.setAgeLoe(100);
+
+        tx.executeWithoutResult(status -> {
+            long before = usedHeap();
+            AtomicLong ages = new AtomicLong();
+            memberJpaRepository.searchMember(condition).forEach(m -> ages.addAndGet(m.getAge()));
+            report("managed", before, ages.get());
+        });
+
+        tx.executeWithoutResult(status -> {
+            long before = usedHeap();
+            AtomicLong ages = new AtomicLong();
+            AtomicLong rows = new AtomicLong();
+            memberTestRepository.scanMembers(condition, m -> {
+                ages.addAndGet(m.getAge());
+                rows.incrementAndGet();
+                assertThat(em.contains(m)).isFalse();
+            });
+            assertThat(rows).hasValue(MEMBER_COUNT);
+            report("stateless", before, ages.get());
+        });
+    }
+
+    private void report(String name, long before, long checksum) {
+        long heap = usedHeap() - before;
+        long start = System.nanoTime();
+        em.flush();
+        long flushMicros = (System.nanoTime() - start) / 1000;
+        System.out.println(name + " retained heap(KB) = " + heap / 1024 + ", flush(us) = " + flushMicros
+                + ", checksum = " + checksum);
+    }
+
+    private long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,221 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest //동시성 테스트라 @Transactional 없이 실제로 커밋함
+class TeamJpaRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void memberCount() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            teamJpaRepository.save(teamA);
+            teamJpaRepository.save(teamB);
+            Member member1 = new Member("member1", 10, teamA);
+            memberJpaRepository.save(member1);
+            memberJpaRepository.save(new Member("member2", 20, teamA));
+            memberJpaRepository.changeTeam(member1.getId(), teamB.getId());
+            return new Long[]{teamA.getId(), teamB.getId()};
+        });
+
+        assertThat(teamJpaRepository.findMemberCount(ids[0])).isEqualTo(1);
+        assertThat(teamJpaRepository.findMemberCount(ids[1])).isEqualTo(1);
+        cleanUp(tx, ids);
+    }
+
+    //삭제 경로. MemberJpaRepository.delete 는 카운터를 내리고, spring data delete 는 syncMemberCount 로 맞춰야 함
+    @Test
+    public void memberCountOnDelete() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team team = new Team("deleteTeam");
+            teamJpaRepository.save(team);
+            Member member1 = new Member("member1", 10, team);
+            Member member2 = new Member("member2", 20, team);
+            Member member3 = new Member("member3", 30, team);
+            memberJpaRepository.save(member1);
+            memberJpaRepository.save(member2);
+            memberJpaRepository.save(member3);
+            return new Long[]{team.getId(), member1.getId(), member2.getId()};
+        });
+
+        memberJpaRepository.delete(ids[1]);
+        assertThat(teamJpaRepository.findMemberCount(ids[0])).isEqualTo(2);
+        assertThatThrownBy(() -> memberJpaRepository.delete(ids[1]))
+                .isInstanceOf(ObjectRetrievalFailureException.class);
+
+        memberRepository.deleteById(ids[2]); //카운터를 거치지 않음
+        assertThat(teamJpaRepository.findMemberCount(ids[0])).isEqualTo(2);
+        tx.executeWithoutResult(status -> teamJpaRepository.syncMemberCount());
+        assertThat(teamJpaRepository.findMemberCount(ids[0])).isEqualTo(1);
+        cleanUp(tx, new Long[]{ids[0]});
+    }
+
+    @Test
+    public void concurrentChangeTeam() throws Exception {
+        int memberCount = 50;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<Long> memberIds = new ArrayList<>();
+        Long[] ids = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            teamJpaRepository.save(teamA);
+            teamJpaRepository.save(teamB);
+            for (int i = 0; i < memberCount; i++) {
+                Member m = new Member("member" + i, i, i % 2 == 0 ? teamA : teamB);
+                memberJpaRepository.save(m);
+                memberIds.add(m.getId());
+            }
+            return new Long[]{teamA.getId(), teamB.getId()};
+        });
+
+        //모든 회원을 양방향으로 동시에 여러번 이동 (같은 회원을 동시에 옮기는 경우 포함)
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch latch = new CountDownLatch(memberCount * 4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < memberCount; i++) {
+                Long memberId = memberIds.get(i);
+                Long teamId = (i + round) % 2 == 0 ? ids[1] : ids[0];
+                futures.add(executor.submit(() -> {
+                    try {
+                        tx.executeWithoutResult(status -> {
+                            memberJpaRepository.changeTeam(memberId, teamId);
+                            //팀원 컬렉션은 로딩하지 않음
+                            assertThat(Hibernate.isInitialized(em.find(Team.class, teamId).getMembers())).isFalse();
+                        });
+                    } finally {
+                        latch.countDown();
+                    }
+                }));
+            }
+        }
+        assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get(); //작업 안에서 난 예외를 여기서 던짐
+        }
+
+        long countA = teamJpaRepository.findMemberCount(ids[0]);
+        long countB = teamJpaRepository.findMemberCount(ids[1]);
+        Long actualA = tx.execute(status -> new JPAQueryFactory(em)
+                .select(member.count()).from(member).where(member.team.id.eq(ids[0])).fetchOne());
+
+        assertThat(countA + countB).isEqualTo(memberCount);
+        assertThat(countA).isEqualTo(actualA);
+        cleanUp(tx, ids);
+    }
+
+    @Test
+    public void changeTeamNotFound() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team team = new Team("teamA");
+            teamJpaRepository.save(team);
+            Member member1 = new Member("member1", 10, team);
+            memberJpaRepository.save(member1);
+            return new Long[]{team.getId(), member1.getId()};
+        });
+
+        assertThatThrownBy(() -> memberJpaRepository.changeTeam(Long.MAX_VALUE, ids[0]))
+                .isInstanceOf(ObjectRetrievalFailureException.class);
+        assertThatThrownBy(() -> memberJpaRepository.changeTeam(ids[1], Long.MAX_VALUE))
+                .isInstanceOf(ObjectRetrievalFailureException.class);
+        assertThat(teamJpaRepository.findMemberCount(ids[0])).isEqualTo(1);
+        cleanUp(tx, new Long[]{ids[0]});
+    }
+
+    @Test
+    public void teamsWithMembers() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team teamA = new Team("withMembersA");
+            Team emptyTeam = new Team("withMembersEmpty");
+            Team teamB = new Team("withMembersB");
+            teamJpaRepository.save(teamA);
+            teamJpaRepository.save(emptyTeam);
+            teamJpaRepository.save(teamB);
+            memberJpaRepository.save(new Member("member1", 10, teamA));
+            memberJpaRepository.save(new Member("member2", 20, teamA));
+            memberJpaRepository.save(new Member("member3", 30, teamB));
+            return new Long[]{teamA.getId(), emptyTeam.getId(), teamB.getId()};
+        });
+        List<Long> teamIds = List.of(ids);
+
+        List<TeamWithMembersDto> transform = teamJpaRepository.findTeamsWithMembers().stream()
+                .filter(dto -> teamIds.contains(dto.getTeamId()))
+                .collect(Collectors.toList());
+        List<TeamWithMembersDto> streaming = new ArrayList<>();
+        teamJpaRepository.forEachTeamWithMembers(dto -> {
+            if (teamIds.contains(dto.getTeamId())) {
+                streaming.add(dto);
+            }
+        });
+        //lazy 로딩으로 만든 결과와도 같아야 함
+        List<TeamWithMembersDto> lazy = tx.execute(status -> teamIds.stream()
+                .map(id -> em.find(Team.class, id))
+                .map(t -> new TeamWithMembersDto(t.getId(), t.getName(), t.getMembers().stream()
+                        .sorted((m1, m2) -> m1.getId().compareTo(m2.getId()))
+                        .map(m -> new MemberDto(m.getUsername(), m.getAge()))
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList()));
+
+        //팀 id 순서, 팀 안에서는 회원 id 순서. 회원 없는 팀은 빈 목록으로 나옴
+        assertThat(transform).extracting("teamId").containsExactly(ids[0], ids[1], ids[2]);
+        assertThat(transform.get(0).getMembers()).extracting("username").containsExactly("member1", "member2");
+        assertThat(transform.get(1).getMembers()).isEmpty();
+        assertThat(transform.get(2).getMembers()).extracting("username").containsExactly("member3");
+        assertThat(streaming).isEqualTo(transform);
+        assertThat(lazy).isEqualTo(transform);
+        cleanUp(tx, ids);
+    }
+
+    private void cleanUp(TransactionTemplate tx, Long[] teamIds) {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id in :ids")
+                    .setParameter("ids", List.of(teamIds))
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t.id in :ids")
+                    .setParameter("ids", List.of(teamIds))
+                    .executeUpdate();
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.RequestTelemetry;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//팀별 members lazy 로딩(N+1) vs GroupBy.transform vs 스트리밍 그룹핑의 statement 수, 시간 비교
+@SpringBootTest
+@Tag("benchmark")
+class TeamWithMembersBenchmarkTest {
+
+    static final int TEAM_COUNT = 200;
+    static final int MEMBERS_PER_TEAM = 20;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            List<Member> members = new ArrayList<>();
+            for (int t = 0; t < TEAM_COUNT; t++) {
+                Team team = new Team("team" + t);
+                teamJpaRepository.save(team);
+                teamIds.add(team.getId());
+                for (int i = 0; i < MEMBERS_PER_TEAM; i++) {
+                    members.add(new Member("member" + t + "_" + i, i, team));
+                }
+            }
+            Team emptyTeam = new Team("emptyTeam");
+            teamJpaRepository.save(emptyTeam);
+            teamIds.add(emptyTeam.getId());
+            memberJpaRepository.saveAll(members);
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+            em.createQuery("delete from Team t where t.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+        });
+    }
+
+    @Test
+    public void lazyVsTransformVsStreaming() {
+        List<TeamWithMembersDto> lazy = measure("lazy members", () -> em
+                .createQuery("select t from Team t order by t.id", Team.class)
+                .getResultList().stream()
+                .map(team -> new TeamWithMembersDto(team.getId(), team.getName(), team.getMembers().stream()
+                        .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                        .map(member -> new MemberDto(member.getUsername(), member.getAge()))
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList()));
+        List<TeamWithMembersDto> transform = measure("GroupBy.transform", teamJpaRepository::findTeamsWithMembers);
+        List<TeamWithMembersDto> streaming = measure("streaming", () -> {
+            List<TeamWithMembersDto> result = new ArrayList<>();
+            teamJpaRepository.forEachTeamWithMembers(result::add);
+            return result;
+        });
+
+        assertThat(transform).isEqualTo(lazy);
+        assertThat(streaming).isEqualTo(lazy);
+        //다른 팀이 있어도 여기서 만든 팀만 봄
+        List<TeamWithMembersDto> created = transform.stream()
+                .filter(dto -> teamIds.contains(dto.getTeamId()))
+                .collect(Collectors.toList());
+        assertThat(created).extracting("teamId").containsExactlyElementsOf(teamIds);
+        assertThat(created.get(TEAM_COUNT).getMembers()).isEmpty();
+    }
+
+    private List<TeamWithMembersDto> measure(String name, Supplier<List<TeamWithMembersDto>> query) {
+        return tx.execute(status -> {
+            em.clear();
+            RequestTelemetry telemetry = RequestTelemetry.begin(name);
+            try {
+                long start = System.nanoTime();
+                List<TeamWithMembersDto> result = query.get();
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println(name + " statements = " + telemetry.getTotal().getStatements() + ", ms = " + millis);
+                return result;
+            } finally {
+                RequestTelemetry.end();
+            }
+        });
+    }
+}
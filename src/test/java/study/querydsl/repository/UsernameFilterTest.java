@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.UsernameFilter;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//필터는 트랜잭션 밖, 읽기 전용 트랜잭션에서만 써서 @Transactional 테스트가 아님
+@SpringBootTest
+class UsernameFilterTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    UsernameFilter usernameFilter;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long memberId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 100; i++) {
+                em.persist(new Member("filter" + i, i));
+            }
+        });
+        memberId = tx.execute(status -> {
+            Member member = new Member("filterA", 10);
+            em.persist(member);
+            return member.getId();
+        });
+        usernameFilter.rebuild();
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Member m where m.username like 'filter%'").executeUpdate());
+        usernameFilter.rebuild();
+    }
+
+    @Test
+    public void skipsAbsentNames() {
+        double skipped = skipped();
+        assertThat(memberRepository.findByUsername("nobody")).isEmpty();
+        assertThat(memberJpaRepository.findByUsername("nobody")).isEmpty();
+        assertThat(memberJpaRepository.findByUsername_Querydsl("nobody")).isEmpty();
+        assertThat(skipped()).isEqualTo(skipped + 3);
+
+        assertThat(memberRepository.findByUsername("filterA")).extracting("id").containsExactly(memberId);
+        assertThat(memberJpaRepository.findByUsername_Querydsl("filter7")).hasSize(1);
+        assertThat(skipped()).isEqualTo(skipped + 3);
+
+        //쓰기 트랜잭션 안에서는 필터를 안 씀
+        tx.executeWithoutResult(status -> memberRepository.findByUsername("nobody"));
+        assertThat(skipped()).isEqualTo(skipped + 3);
+    }
+
+    @Test
+    public void insertAndRename() {
+        double entries = entries();
+        tx.executeWithoutResult(status -> em.persist(new Member("filterNew", 20)));
+        assertThat(memberRepository.findByUsername("filterNew")).hasSize(1);
+        //이벤트 때와 커밋 뒤 두번 넣어도 한번만 셈
+        assertThat(entries()).isEqualTo(entries + 1);
+
+        tx.executeWithoutResult(status -> em.find(Member.class, memberId).setUsername("filterRenamed"));
+        assertThat(memberRepository.findByUsername("filterRenamed")).extracting("id").containsExactly(memberId);
+
+        //지울 수 없어서 예전 이름은 오탐으로 남았다가 다시 만들면 빠짐
+        assertThat(usernameFilter.mightContain("filterA")).isTrue();
+        assertThat(memberRepository.findByUsername("filterA")).isEmpty();
+        usernameFilter.rebuild();
+        assertThat(usernameFilter.mightContain("filterA")).isFalse();
+        assertThat(usernameFilter.mightContain("filterRenamed")).isTrue();
+    }
+
+    @Test
+    public void bulkInsertDisablesUntilRebuild() {
+        tx.executeWithoutResult(status -> em.createNativeQuery(
+                "insert into member (member_id, username, age) values (1000000000, 'filterNative', 1)")
+                .executeUpdate());
+
+        //필터에 없는 이름이지만 다시 만들 때까지는 걸러지지 않음
+        double skipped = skipped();
+        assertThat(memberRepository.findByUsername("filterNative")).hasSize(1);
+        assertThat(skipped()).isEqualTo(skipped);
+
+        usernameFilter.rebuild();
+        assertThat(usernameFilter.isUsable()).isTrue();
+        assertThat(memberRepository.findByUsername("filterNative")).hasSize(1);
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (usernameFilter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+        //목표 1%, 회원 수가 적어서 실제로는 더 낮음
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(usernameFilter.expectedFalsePositiveRate()).isLessThan(0.01);
+    }
+
+    private double entries() {
+        return meterRegistry.get("member.username.filter.entries").gauge().value();
+    }
+
+    private double skipped() {
+        return meterRegistry.get("member.username.filter.lookups").tag("result", "skipped").counter().count();
+    }
+}
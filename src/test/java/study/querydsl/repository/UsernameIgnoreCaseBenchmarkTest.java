@@ -0,0 +1,95 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+//lower(username) = ? (전체 스캔) vs 정규화 컬럼 username_lower = ? (인덱스) 조회 시간 비교
+@SpringBootTest
+@Tag("benchmark")
+class UsernameIgnoreCaseBenchmarkTest {
+
+    static final int MEMBER_COUNT = 50_000;
+    static final int LOOKUPS = 200;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("caseBench");
+            teamJpaRepository.save(team);
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                members.add(new Member((i % 2 == 0 ? "CaseBench" : "CASEBENCH") + i, i % 100, team));
+            }
+            memberJpaRepository.saveAll(members);
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    public void lowerFunctionVsNormalizedColumn() {
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        measure("lower(username)", i -> queryFactory
+                .selectFrom(member)
+                .where(member.username.lower().eq("casebench" + i))
+                .fetch().size());
+        measure("username_lower", i -> {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsername("cAsEbEnCh" + i);
+            condition.setUsernameIgnoreCase(true);
+            List<MemberTeamDto> result = memberJpaRepository.search(condition);
+            return result.size();
+        });
+    }
+
+    private void measure(String name, IntFunction<Integer> lookup) {
+        tx.executeWithoutResult(status -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                int index = i * (MEMBER_COUNT / LOOKUPS);
+                assertThat(lookup.apply(index)).isEqualTo(1);
+            }
+            long micros = (System.nanoTime() - start) / 1000 / LOOKUPS;
+            System.out.println(name + " avg(us) = " + micros);
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package study.querydsl.shard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.DataVersion;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "study.querydsl.shard.urls="
+        + "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,"
+        + "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,"
+        + "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1")
+class ShardedMemberRepositoryTest {
+
+    @Autowired
+    MemberShards memberShards;
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+    @Autowired
+    DataVersion dataVersion;
+
+    @BeforeEach
+    public void before() {
+        for (MemberShards.Shard shard : memberShards.all()) {
+            shard.write(em -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+        for (int t = 0; t < 4; t++) {
+            Team team = new Team("team" + t);
+            shardedMemberRepository.saveTeam(team);
+            for (int i = 0; i < 10; i++) {
+                shardedMemberRepository.save(new Member("member" + (t * 10 + i), (i * 7 + t) % 25, team));
+            }
+        }
+    }
+
+    @Test
+    public void searchRoutesByTeam() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+
+        long[] before = reads();
+        List<MemberTeamDto> result = shardedMemberRepository.search(condition);
+        long[] after = reads();
+
+        assertThat(result).hasSize(10);
+        assertThat(result).extracting("teamName").containsOnly("team1");
+        //0번 샤드에서 팀 id 를 찾고, 그 팀의 샤드에만 검색을 보냄
+        int target = memberShards.forTeam(result.get(0).getTeamId()).getIndex();
+        for (int i = 0; i < after.length; i++) {
+            assertThat(after[i] - before[i]).isEqualTo((i == 0 ? 1 : 0) + (i == target ? 1 : 0));
+        }
+
+        assertThat(shardedMemberRepository.search(new MemberSearchCondition())).hasSize(40);
+    }
+
+    @Test
+    public void saveTeamCompensatesPartialFailure() {
+        MemberShards.Shard last = memberShards.all().get(memberShards.all().size() - 1);
+        last.write(em -> em.createNativeQuery("alter table team rename to team_broken").executeUpdate());
+        try {
+            assertThatThrownBy(() -> shardedMemberRepository.saveTeam(new Team("brokenTeam")))
+                    .isInstanceOf(RuntimeException.class);
+        } finally {
+            last.write(em -> em.createNativeQuery("alter table team_broken rename to team").executeUpdate());
+        }
+        //먼저 넣은 샤드에서도 지워짐
+        for (MemberShards.Shard shard : memberShards.all()) {
+            assertThat(teamCount(shard, "brokenTeam")).isZero();
+        }
+
+        //복제는 여러번 해도 샤드마다 한 행
+        Team team = new Team("replicatedTeam");
+        shardedMemberRepository.saveTeam(team);
+        shardedMemberRepository.replicateTeam(team);
+        for (MemberShards.Shard shard : memberShards.all()) {
+            assertThat(teamCount(shard, "replicatedTeam")).isEqualTo(1);
+        }
+    }
+
+    //샤드마다 id 구간이 달라서 id 만으로 샤드를 찾음
+    @Test
+    public void memberIdsIdentifyShard() {
+        List<MemberTeamDto> all = shardedMemberRepository.search(new MemberSearchCondition());
+
+        assertThat(all).extracting("memberId").doesNotHaveDuplicates();
+        for (MemberTeamDto dto : all) {
+            assertThat(memberShards.forMemberId(dto.getMemberId())).isSameAs(memberShards.forTeam(dto.getTeamId()));
+        }
+    }
+
+    //샤드 EntityManagerFactory 에도 HibernatePropertiesCustomizer 가 적용됨
+    @Test
+    public void shardWritesChangeDataVersion() {
+        long before = dataVersion.current();
+        Team team = new Team("versionTeam");
+        shardedMemberRepository.saveTeam(team);
+        shardedMemberRepository.save(new Member("versionMember", 10, team));
+
+        assertThat(dataVersion.current()).isGreaterThan(before);
+    }
+
+    private long[] reads() {
+        return memberShards.all().stream().mapToLong(MemberShards.Shard::getReads).toArray();
+    }
+
+    private long teamCount(MemberShards.Shard shard, String name) {
+        return shard.read(queryFactory -> queryFactory
+                .selectFrom(QTeam.team)
+                .where(QTeam.team.name.eq(name))
+                .fetchCount());
+    }
+
+    @Test
+    public void searchPageMatchesSingleSort() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(5);
+        List<MemberTeamDto> all = shardedMemberRepository.search(condition).stream()
+                .sorted(Comparator.comparing(MemberTeamDto::getAge).reversed()
+                        .thenComparing(MemberTeamDto::getUsername)
+                        .thenComparing(MemberTeamDto::getMemberId))
+                .collect(Collectors.toList());
+
+        Sort sort = Sort.by(Sort.Order.desc("age"), Sort.Order.asc("username"));
+        for (int page = 0; page * 7 < all.size(); page++) {
+            Page<MemberTeamDto> result = shardedMemberRepository.searchPageSimple(condition, PageRequest.of(page, 7, sort));
+
+            assertThat(result.getTotalElements()).isEqualTo(all.size());
+            assertThat(result.getContent()).extracting("username")
+                    .containsExactlyElementsOf(all.subList(page * 7, Math.min(all.size(), page * 7 + 7)).stream()
+                            .map(MemberTeamDto::getUsername)
+                            .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void applyPagination() {
+        Page<Member> result = shardedMemberRepository.applyPagination(new MemberSearchCondition(),
+                PageRequest.of(1, 5, Sort.by("username")));
+
+        assertThat(result.getTotalElements()).isEqualTo(40);
+        assertThat(result.getContent()).extracting("username")
+                .containsExactly("member13", "member14", "member15", "member16", "member17");
+    }
+}